@@ -0,0 +1,51 @@
+package ru.afterwhy.openapimd.gradle;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import ru.afterwhy.openapimd.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+// Одна спецификация на элемент очереди: воркеры демона рендерят изменившиеся спецификации параллельно
+public abstract class GenerateMarkdownAction implements WorkAction<GenerateMarkdownAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+        RegularFileProperty getSpecFile();
+
+        RegularFileProperty getOutputFile();
+
+        Property<String> getLocale();
+
+        RegularFileProperty getTemplate();
+
+        Property<Boolean> getDeterministic();
+
+        Property<Boolean> getStreaming();
+    }
+
+    @Override
+    public void execute() {
+        var parameters = getParameters();
+        var locale = Locale.forLanguageTag(parameters.getLocale().get());
+        var template = parameters.getTemplate().isPresent() ? parameters.getTemplate().get().getAsFile().toPath() : null;
+        var specFile = parameters.getSpecFile().get().getAsFile().toPath();
+        var outputFile = parameters.getOutputFile().get().getAsFile().toPath();
+
+        var objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+
+        try {
+            var specParser = new SpecParser(null, parameters.getStreaming().get() ? new StreamingSpecReader() : null, parameters.getDeterministic().get());
+            var mdRenderer = new MdRenderer(objectMapper, RenderPlan.compile(locale, template), null);
+            new DocumentGenerator(specParser, mdRenderer, locale).generate(specFile, outputFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to build markdown for " + specFile, e);
+        }
+    }
+}
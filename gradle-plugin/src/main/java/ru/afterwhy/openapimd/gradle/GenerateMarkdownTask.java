@@ -0,0 +1,125 @@
+package ru.afterwhy.openapimd.gradle;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.*;
+import org.gradle.work.ChangeType;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkerExecutor;
+import ru.afterwhy.openapimd.BatchGenerator;
+import ru.afterwhy.openapimd.ReferencedFiles;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Спецификации с неизменными входами не пересобираются: в инкрементальном запуске в очередь воркеров
+// попадают только те, что изменились сами или через файлы по $ref
+@CacheableTask
+public abstract class GenerateMarkdownTask extends DefaultTask {
+
+    @Incremental
+    @SkipWhenEmpty
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getSpecFiles();
+
+    @Incremental
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getReferencedFiles();
+
+    @Optional
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getTemplate();
+
+    @Input
+    public abstract Property<String> getLocale();
+
+    @Input
+    public abstract Property<Boolean> getDeterministic();
+
+    @Input
+    public abstract Property<Boolean> getStreaming();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void generate(InputChanges inputChanges) throws IOException {
+        var specFiles = getSpecFiles().getFiles().stream()
+                .map(file -> file.toPath().toAbsolutePath().normalize())
+                .sorted()
+                .toList();
+        var outputDirectory = getOutputDirectory().get().getAsFile().toPath();
+        // Имена результатов зависят от всего набора спецификаций (одинаковые имена различаются каталогом)
+        var outputFiles = BatchGenerator.getOutputFiles(specFiles, outputDirectory);
+
+        var specsToGenerate = inputChanges.isIncremental()
+                ? getChangedSpecs(inputChanges, specFiles)
+                : specFiles;
+        deleteStaleOutputs(outputDirectory, outputFiles.values());
+
+        var workQueue = getWorkerExecutor().noIsolation();
+        for (var specFile : specsToGenerate) {
+            workQueue.submit(GenerateMarkdownAction.class, parameters -> {
+                parameters.getSpecFile().set(specFile.toFile());
+                parameters.getOutputFile().set(outputFiles.get(specFile).toFile());
+                parameters.getLocale().set(getLocale());
+                parameters.getTemplate().set(getTemplate());
+                parameters.getDeterministic().set(getDeterministic());
+                parameters.getStreaming().set(getStreaming());
+            });
+        }
+    }
+
+    private List<Path> getChangedSpecs(InputChanges inputChanges, List<Path> specFiles) throws IOException {
+        var changedFiles = new HashSet<Path>();
+        for (var change : inputChanges.getFileChanges(getSpecFiles())) {
+            if (change.getChangeType() != ChangeType.MODIFIED) {
+                // Набор спецификаций изменился, и имена результатов могли сдвинуться
+                return specFiles;
+            }
+            changedFiles.add(change.getFile().toPath().toAbsolutePath().normalize());
+        }
+        for (var change : inputChanges.getFileChanges(getReferencedFiles())) {
+            changedFiles.add(change.getFile().toPath().toAbsolutePath().normalize());
+        }
+
+        var changedSpecs = new ArrayList<Path>();
+        for (var specFile : specFiles) {
+            if (changedFiles.contains(specFile) || ReferencedFiles.collect(specFile).stream().anyMatch(changedFiles::contains)) {
+                changedSpecs.add(specFile);
+            }
+        }
+        return changedSpecs;
+    }
+
+    private static void deleteStaleOutputs(Path outputDirectory, Collection<Path> outputFiles) throws IOException {
+        if (!Files.isDirectory(outputDirectory)) {
+            return;
+        }
+        var expected = new HashSet<>(outputFiles);
+        try (Stream<Path> files = Files.list(outputDirectory)) {
+            for (var file : files.filter(f -> f.getFileName().toString().endsWith(".md")).toList()) {
+                if (!expected.contains(file)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
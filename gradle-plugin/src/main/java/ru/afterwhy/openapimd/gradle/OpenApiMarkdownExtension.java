@@ -0,0 +1,21 @@
+package ru.afterwhy.openapimd.gradle;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+
+public abstract class OpenApiMarkdownExtension {
+
+    public abstract ConfigurableFileCollection getSpecs();
+
+    public abstract DirectoryProperty getOutputDirectory();
+
+    public abstract Property<String> getLocale();
+
+    public abstract RegularFileProperty getTemplate();
+
+    public abstract Property<Boolean> getDeterministic();
+
+    public abstract Property<Boolean> getStreaming();
+}
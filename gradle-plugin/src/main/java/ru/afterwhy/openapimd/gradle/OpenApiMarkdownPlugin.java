@@ -0,0 +1,55 @@
+package ru.afterwhy.openapimd.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.file.FileSystemLocation;
+import ru.afterwhy.openapimd.ReferencedFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class OpenApiMarkdownPlugin implements Plugin<Project> {
+
+    @Override
+    public void apply(Project project) {
+        var extension = project.getExtensions().create("openApiMarkdown", OpenApiMarkdownExtension.class);
+        extension.getOutputDirectory().convention(project.getLayout().getBuildDirectory().dir("docs/api"));
+        extension.getLocale().convention("ru-RU");
+        // Случайные примеры дали бы новый результат на каждой сборке, и кэш задачи не работал бы
+        extension.getDeterministic().convention(true);
+        extension.getStreaming().convention(false);
+
+        project.getTasks().register("generateApiDocs", GenerateMarkdownTask.class, task -> {
+            task.setGroup("documentation");
+            task.setDescription("Generates Markdown documentation from OpenAPI specs");
+            task.getSpecFiles().from(extension.getSpecs());
+            task.getReferencedFiles().from(extension.getSpecs().getElements().map(OpenApiMarkdownPlugin::collectReferencedFiles));
+            task.getOutputDirectory().set(extension.getOutputDirectory());
+            task.getLocale().set(extension.getLocale());
+            task.getTemplate().set(extension.getTemplate());
+            task.getDeterministic().set(extension.getDeterministic());
+            task.getStreaming().set(extension.getStreaming());
+        });
+    }
+
+    // Файлы по $ref читаются при снятии отпечатков входов, а не при конфигурации
+    private static Set<File> collectReferencedFiles(Set<FileSystemLocation> specs) {
+        var files = new LinkedHashSet<File>();
+        for (var spec : specs) {
+            var specFile = spec.getAsFile().toPath().toAbsolutePath().normalize();
+            try {
+                ReferencedFiles.collect(specFile).stream()
+                        .filter(file -> !file.equals(specFile))
+                        .map(Path::toFile)
+                        .forEach(files::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return files;
+    }
+}
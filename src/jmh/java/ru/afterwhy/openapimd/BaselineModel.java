@@ -0,0 +1,100 @@
+package ru.afterwhy.openapimd;
+
+import ru.afterwhy.openapimd.model.*;
+
+import java.util.*;
+
+/**
+ * Копия разобранной модели в прежней раскладке, только для сравнения занимаемой памяти.
+ * <p>
+ * Коды ответов - упакованные ключи {@link HashMap}, варианты содержимого - {@link LinkedHashMap},
+ * тэги - {@link ArrayList}. Строки тэгов, типов и форматов копируются на каждый объект, как их
+ * отдавал swagger-parser: значения в разобранном документе не интернируются. MIME-типы остаются общими,
+ * потому что Jackson интернирует имена полей. Примеры и эндпойнт-параметры те же объекты, что и в модели.
+ */
+public final class BaselineModel {
+    private final Map<SpecSchema, Schema> schemas = new IdentityHashMap<>();
+
+    public record Endpoint(String operationId,
+                           HttpMethod method,
+                           String path,
+                           String summary,
+                           String description,
+                           List<String> tag,
+                           List<EndpointParameter> parameters,
+                           ExchangeContent request,
+                           ResponseDescriptor responses) {
+    }
+
+    public record ResponseDescriptor(Map<Integer, ExchangeContent> responses) {
+    }
+
+    public record ExchangeContent(Map<String, Schema> content) {
+    }
+
+    public record Schema(String name, String description, List<Property> properties, SpecExample example, Schema itemSpec) {
+    }
+
+    public record Property(Schema schema, String name, String type, String format, String description, SpecExample example, boolean required) {
+    }
+
+    public record Model(List<Endpoint> endpoints, List<Schema> schemas) {
+    }
+
+    private BaselineModel() {
+    }
+
+    public static Model of(Specification spec) {
+        var baseline = new BaselineModel();
+        var schemas = spec.schemas().stream().map(baseline::convert).toList();
+        var endpoints = spec.endpoints().stream().map(baseline::convert).toList();
+        return new Model(endpoints, schemas);
+    }
+
+    private Endpoint convert(SpecApiEndpoint endpoint) {
+        ArrayList<String> tags = null;
+        if (endpoint.tag() != null) {
+            tags = new ArrayList<>();
+            for (var tag : endpoint.tag()) {
+                tags.add(new String(tag));
+            }
+        }
+        ResponseDescriptor responses = null;
+        if (endpoint.responses() != null) {
+            var responseContents = new HashMap<Integer, ExchangeContent>();
+            for (int i = 0; i < endpoint.responses().size(); i++) {
+                responseContents.put(endpoint.responses().getCode(i), convert(endpoint.responses().getContent(i)));
+            }
+            responses = new ResponseDescriptor(responseContents);
+        }
+        return new Endpoint(endpoint.operationId(), endpoint.method(), endpoint.path(), endpoint.summary(), endpoint.description(),
+                tags, endpoint.parameters(), endpoint.request() != null ? convert(endpoint.request()) : null, responses);
+    }
+
+    private ExchangeContent convert(ru.afterwhy.openapimd.model.ExchangeContent content) {
+        var variants = new LinkedHashMap<String, Schema>();
+        for (int i = 0; i < content.size(); i++) {
+            variants.put(content.getMimeType(i), convert(content.getSchema(i)));
+        }
+        return new ExchangeContent(variants);
+    }
+
+    // Общие узлы графа схем остаются общими; циклов в модели нет, их разрывают заглушки
+    private Schema convert(SpecSchema schema) {
+        var converted = schemas.get(schema);
+        if (converted != null) {
+            return converted;
+        }
+        var properties = schema.properties().stream()
+                .map(p -> new Property(p.schema() != null ? convert(p.schema()) : null, p.name(), copy(p.type()), copy(p.format()), p.description(), p.example(), p.required()))
+                .toList();
+        converted = new Schema(schema.name(), schema.description(), properties, schema.example(),
+                schema.itemSpec() != null ? convert(schema.itemSpec()) : null);
+        schemas.put(schema, converted);
+        return converted;
+    }
+
+    private static String copy(String value) {
+        return value != null ? new String(value) : null;
+    }
+}
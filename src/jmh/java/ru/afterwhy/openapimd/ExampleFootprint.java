@@ -0,0 +1,71 @@
+package ru.afterwhy.openapimd;
+
+import org.openjdk.jol.info.GraphLayout;
+import ru.afterwhy.openapimd.model.ExchangeContent;
+import ru.afterwhy.openapimd.model.SpecSchema;
+import ru.afterwhy.openapimd.model.Specification;
+
+import java.util.*;
+
+/**
+ * Память под примеры спецификации: общие узлы учитываются один раз, ссылки на них - отдельно.
+ * <p>
+ * Байты - {@link GraphLayout#totalSize()} всего графа примеров, то есть с заголовками, выравниванием
+ * и массивами коллекций текущей JVM, а не оценка по константам.
+ */
+public record ExampleFootprint(long references, long distinctNodes, long totalBytes) {
+
+    public static ExampleFootprint of(Specification spec) {
+        var examples = new ArrayList<Object>();
+        for (var schema : spec.schemas()) {
+            examples.add(schema.example().get());
+        }
+        for (var endpoint : spec.endpoints()) {
+            addExamples(endpoint.request(), examples);
+            if (endpoint.responses() != null) {
+                endpoint.responses().contents().forEach(c -> addExamples(c, examples));
+            }
+        }
+        return of(examples);
+    }
+
+    public static ExampleFootprint of(Collection<?> examples) {
+        var visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        var stack = new ArrayDeque<Object>();
+        long references = 0;
+        for (var example : examples) {
+            if (example != null) {
+                stack.push(example);
+            }
+        }
+        while (!stack.isEmpty()) {
+            var node = stack.pop();
+            references++;
+            if (!visited.add(node)) {
+                continue;
+            }
+            switch (node) {
+                case Map<?, ?> map -> map.forEach((key, value) -> {
+                    stack.push(key);
+                    if (value != null) {
+                        stack.push(value);
+                    }
+                });
+                case Collection<?> collection -> collection.stream().filter(Objects::nonNull).forEach(stack::push);
+                default -> {
+                }
+            }
+        }
+        var roots = examples.stream().filter(Objects::nonNull).toArray();
+        var totalBytes = roots.length > 0 ? GraphLayout.parseInstance(roots).totalSize() : 0;
+        return new ExampleFootprint(references, visited.size(), totalBytes);
+    }
+
+    private static void addExamples(ExchangeContent content, List<Object> examples) {
+        if (content != null) {
+            content.schemas().stream()
+                    .map(SpecSchema::example)
+                    .forEach(e -> examples.add(e.get()));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Печатает объём примеров для синтетических спецификаций с растущим числом эндпойнтов.
+ * <p>
+ * Схемы сущностей переиспользуются несколькими операциями, поэтому число ссылок растёт
+ * быстрее числа различных узлов, а занимаемая память (JOL) должна следовать за вторым.
+ */
+public class ExampleFootprintReport {
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("endpoints\treferences\tdistinctNodes\ttotalBytes");
+        for (var endpointCount : new int[]{100, 1000, 5000}) {
+            var specFile = new SyntheticSpecGenerator(endpointCount, 3, 2, 1)
+                    .writeTo(Files.createTempFile("synthetic-spec", ".json"));
+            try {
+                var footprint = ExampleFootprint.of(new SpecParser().parse(specFile.toString()));
+                System.out.printf("%d\t%d\t%d\t%d%n", endpointCount, footprint.references(), footprint.distinctNodes(), footprint.totalBytes());
+            } finally {
+                Files.deleteIfExists(specFile);
+            }
+        }
+    }
+}
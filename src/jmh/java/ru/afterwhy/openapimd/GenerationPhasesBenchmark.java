@@ -0,0 +1,107 @@
+package ru.afterwhy.openapimd;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.parser.OpenAPIV3Parser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.afterwhy.openapimd.model.Specification;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GenerationPhasesBenchmark {
+
+    @Param({"100", "1000"})
+    public int endpointCount;
+
+    @Param({"3"})
+    public int schemaDepth;
+
+    @Param({"2"})
+    public int allOfFanOut;
+
+    @Param({"1"})
+    public int arrayNesting;
+
+    @Param({"ru-RU"})
+    public String localeTag;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Locale locale;
+    private Executor executor;
+    private Path specFile;
+    private OpenAPI openAPI;
+    private SchemaStorage schemaStorage;
+    private Map<String, Schema> componentSchemas;
+    private Specification specification;
+    private MdRenderer mdRenderer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        locale = Locale.forLanguageTag(localeTag);
+        executor = parallel ? ForkJoinPool.commonPool() : null;
+        specFile = new SyntheticSpecGenerator(endpointCount, schemaDepth, allOfFanOut, arrayNesting)
+                .writeTo(Files.createTempFile("synthetic-spec", ".json"));
+
+        openAPI = new OpenAPIV3Parser().read(specFile.toString());
+        schemaStorage = new SchemasParser().getSchemas(openAPI);
+        componentSchemas = openAPI.getComponents().getSchemas();
+        specification = new SpecParser().parse(specFile.toString());
+
+        var objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        mdRenderer = new MdRenderer(objectMapper, locale, executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(specFile);
+    }
+
+    @Benchmark
+    public Specification specParserParse() {
+        return new SpecParser(executor).parse(specFile.toString());
+    }
+
+    @Benchmark
+    public Specification streamingSpecParserParse() {
+        return new SpecParser(executor, new StreamingSpecReader()).parse(specFile.toString());
+    }
+
+    @Benchmark
+    public SchemaStorage schemasParserGetSchemas() {
+        // Новый парсер на каждый вызов, чтобы не попадать в уже заполненный кэш схем
+        return new SchemasParser(executor).getSchemas(openAPI);
+    }
+
+    @Benchmark
+    public void exampleGeneratorGetExample(Blackhole blackhole) {
+        for (var schema : componentSchemas.values()) {
+            var fullSchema = schemaStorage.getFullSchema(schema);
+            var specSchema = schemaStorage.getSchemaSpec(schema.getName());
+            blackhole.consume(ExampleGenerator.getExample(fullSchema, specSchema.itemSpec(), specSchema.properties(), schemaStorage));
+        }
+    }
+
+    @Benchmark
+    public String mdRendererRender() {
+        return mdRenderer.render(specification);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.afterwhy.openapimd;
+
+import org.openjdk.jol.info.GraphLayout;
+import ru.afterwhy.openapimd.model.SpecSchema;
+import ru.afterwhy.openapimd.model.Specification;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+
+/**
+ * Печатает занимаемую память (JOL, весь достижимый граф) эндпойнтов и схем модели
+ * и той же модели в прежней раскладке {@link BaselineModel} для синтетических спецификаций
+ * с растущим числом эндпойнтов.
+ * <p>
+ * Примеры строятся до замера: иначе в граф попадают генераторы вместе с исходными схемами OpenAPI.
+ * Сами примеры общие для обеих раскладок и входят в оба числа, поэтому выигрыш раскладки
+ * виден как доля от всей модели (на JDK 21 около 23% при 100-10000 эндпойнтах).
+ */
+public class ModelFootprintReport {
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("endpoints\tbaselineBytes\tcompactBytes\treduction");
+        for (var endpointCount : new int[]{100, 1000, 10000}) {
+            var specFile = new SyntheticSpecGenerator(endpointCount, 3, 2, 1)
+                    .writeTo(Files.createTempFile("synthetic-spec", ".json"));
+            try {
+                var spec = new SpecParser().parse(specFile.toString());
+                materializeExamples(spec);
+                var baseline = BaselineModel.of(spec);
+                var baselineBytes = GraphLayout.parseInstance(baseline.endpoints(), baseline.schemas()).totalSize();
+                var compactBytes = GraphLayout.parseInstance(spec.endpoints(), spec.schemas()).totalSize();
+                System.out.printf("%d\t%d\t%d\t%.1f%%%n", endpointCount, baselineBytes, compactBytes,
+                        100.0 * (baselineBytes - compactBytes) / baselineBytes);
+            } finally {
+                Files.deleteIfExists(specFile);
+            }
+        }
+    }
+
+    private static void materializeExamples(Specification spec) {
+        var visited = Collections.<SpecSchema>newSetFromMap(new IdentityHashMap<>());
+        var stack = new ArrayDeque<SpecSchema>(spec.schemas());
+        for (var endpoint : spec.endpoints()) {
+            if (endpoint.request() != null) {
+                stack.addAll(endpoint.request().schemas());
+            }
+            endpoint.responses().contents().forEach(content -> stack.addAll(content.schemas()));
+        }
+        while (!stack.isEmpty()) {
+            var schema = stack.pop();
+            if (!visited.add(schema)) {
+                continue;
+            }
+            schema.example().get();
+            for (var property : schema.properties()) {
+                property.example().get();
+                if (property.schema() != null) {
+                    stack.push(property.schema());
+                }
+            }
+            if (schema.itemSpec() != null) {
+                stack.push(schema.itemSpec());
+            }
+        }
+    }
+}
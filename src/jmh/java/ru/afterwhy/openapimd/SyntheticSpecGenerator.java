@@ -0,0 +1,183 @@
+package ru.afterwhy.openapimd;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Генератор синтетической OpenAPI-спецификации для бенчмарков.
+ * <p>
+ * Каждая сущность — цепочка из {@code schemaDepth} компонентных схем, верхний уровень которой
+ * собирается через {@code allOf} из {@code allOfFanOut} частей, а ссылки на следующий уровень
+ * дополнительно вложены в {@code arrayNesting} массивов.
+ */
+public class SyntheticSpecGenerator {
+    private static final int OPERATIONS_PER_TAG = 20;
+    private static final int OPERATIONS_PER_ENTITY = 4;
+
+    private final int endpointCount;
+    private final int schemaDepth;
+    private final int allOfFanOut;
+    private final int arrayNesting;
+
+    public SyntheticSpecGenerator(int endpointCount, int schemaDepth, int allOfFanOut, int arrayNesting) {
+        if (endpointCount < 1 || schemaDepth < 1 || allOfFanOut < 0 || arrayNesting < 0) {
+            throw new IllegalArgumentException("Invalid synthetic spec parameters");
+        }
+        this.endpointCount = endpointCount;
+        this.schemaDepth = schemaDepth;
+        this.allOfFanOut = allOfFanOut;
+        this.arrayNesting = arrayNesting;
+    }
+
+    public Path writeTo(Path file) throws IOException {
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), generate());
+        return file;
+    }
+
+    public Map<String, Object> generate() {
+        var spec = new LinkedHashMap<String, Object>();
+        spec.put("openapi", "3.0.3");
+        spec.put("info", Map.of(
+                "title", "Synthetic API (%d operations)".formatted(endpointCount),
+                "description", "depth=%d, allOf=%d, arrays=%d".formatted(schemaDepth, allOfFanOut, arrayNesting),
+                "version", "1.0"
+        ));
+        spec.put("tags", getTags());
+        spec.put("paths", getPaths());
+        spec.put("components", Map.of("schemas", getSchemas()));
+        return spec;
+    }
+
+    private int tagCount() {
+        return (endpointCount + OPERATIONS_PER_TAG - 1) / OPERATIONS_PER_TAG;
+    }
+
+    private int entityCount() {
+        return Math.max(1, endpointCount / OPERATIONS_PER_ENTITY);
+    }
+
+    private List<Map<String, Object>> getTags() {
+        var tags = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < tagCount(); i++) {
+            tags.add(Map.of("name", tagName(i), "description", "Operations of group " + i));
+        }
+        return tags;
+    }
+
+    private Map<String, Object> getPaths() {
+        var paths = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < endpointCount; i++) {
+            var path = "/resource-%d/items".formatted(i / 2);
+            var pathItem = (Map<String, Object>) paths.computeIfAbsent(path, _ -> new LinkedHashMap<String, Object>());
+            var entityRef = ref(entityName(i % entityCount(), 0));
+
+            var operation = new LinkedHashMap<String, Object>();
+            operation.put("tags", List.of(tagName(i / OPERATIONS_PER_TAG)));
+            operation.put("summary", "Operation %d".formatted(i));
+            operation.put("description", "Synthetic operation number %d".formatted(i));
+            operation.put("operationId", "operation%d".formatted(i));
+            if (i % 2 == 0) {
+                operation.put("parameters", List.of(Map.of(
+                        "name", "limit",
+                        "in", "query",
+                        "description", "Page size",
+                        "required", false,
+                        "schema", Map.of("type", "integer", "format", "int32")
+                )));
+                operation.put("responses", Map.of("200", response(entityRef)));
+                pathItem.put("get", operation);
+            } else {
+                operation.put("requestBody", Map.of("content", Map.of("application/json", Map.of("schema", entityRef))));
+                operation.put("responses", Map.of("201", response(entityRef)));
+                pathItem.put("post", operation);
+            }
+        }
+        return paths;
+    }
+
+    private static Map<String, Object> response(Map<String, Object> schema) {
+        return Map.of(
+                "description", "OK",
+                "content", Map.of("application/json", Map.of("schema", schema))
+        );
+    }
+
+    private Map<String, Object> getSchemas() {
+        var schemas = new LinkedHashMap<String, Object>();
+        for (int entity = 0; entity < entityCount(); entity++) {
+            for (int level = 0; level < schemaDepth; level++) {
+                var properties = getLevelProperties(entity, level);
+                if (level == 0 && allOfFanOut > 0) {
+                    var allOf = new ArrayList<Map<String, Object>>();
+                    for (int part = 0; part < allOfFanOut; part++) {
+                        var partName = "%sPart%d".formatted(entityName(entity, level), part);
+                        schemas.put(partName, objectSchema(Map.of(
+                                "part%dCode".formatted(part), Map.of("type", "string"),
+                                "part%dVersion".formatted(part), Map.of("type", "integer", "format", "int64")
+                        ), List.of()));
+                        allOf.add(ref(partName));
+                    }
+                    allOf.add(objectSchema(properties, List.of("id")));
+                    schemas.put(entityName(entity, level), Map.of("allOf", allOf));
+                } else {
+                    schemas.put(entityName(entity, level), objectSchema(properties, List.of("id")));
+                }
+            }
+        }
+        return schemas;
+    }
+
+    private Map<String, Object> getLevelProperties(int entity, int level) {
+        var properties = new LinkedHashMap<String, Object>();
+        properties.put("id", Map.of("type", "integer", "format", "int64", "description", "Identifier"));
+        properties.put("name", Map.of("type", "string", "description", "Name"));
+        properties.put("active", Map.of("type", "boolean"));
+        properties.put("amount", Map.of("type", "number", "format", "float"));
+        properties.put("createdAt", Map.of("type", "string", "format", "date-time"));
+        if (level + 1 < schemaDepth) {
+            var child = ref(entityName(entity, level + 1));
+            properties.put("child", child);
+            if (arrayNesting > 0) {
+                properties.put("children", nestedArray(child, arrayNesting));
+            }
+        }
+        return properties;
+    }
+
+    private static Map<String, Object> nestedArray(Map<String, Object> itemRef, int nesting) {
+        // Элементы массива — встроенный объект со ссылкой, а не сама ссылка
+        Map<String, Object> items = objectSchema(Map.of("value", itemRef), List.of());
+        for (int i = 0; i < nesting; i++) {
+            items = Map.of("type", "array", "items", items);
+        }
+        return items;
+    }
+
+    private static Map<String, Object> objectSchema(Map<String, Object> properties, List<String> required) {
+        var schema = new LinkedHashMap<String, Object>();
+        schema.put("type", "object");
+        schema.put("properties", properties);
+        if (!required.isEmpty()) {
+            schema.put("required", required);
+        }
+        return schema;
+    }
+
+    private static Map<String, Object> ref(String schemaName) {
+        return Map.of("$ref", "#/components/schemas/" + schemaName);
+    }
+
+    private static String tagName(int index) {
+        return "Group " + index;
+    }
+
+    private static String entityName(int entity, int level) {
+        return "Entity%dLevel%d".formatted(entity, level);
+    }
+}
@@ -0,0 +1,173 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+public class BatchGenerator {
+    private static final Set<String> SPEC_EXTENSIONS = Set.of("yaml", "yml", "json");
+
+    private final SpecGenerator specGenerator;
+    private final Semaphore permits;
+
+    public BatchGenerator(DocumentGenerator documentGenerator) {
+        this(documentGenerator::generateWithStats);
+    }
+
+    public BatchGenerator(SpecGenerator specGenerator) {
+        this(specGenerator, Runtime.getRuntime().availableProcessors());
+    }
+
+    // maxConcurrentSpecs - сколько спецификаций разбирается одновременно: каждая держит в памяти свою модель целиком
+    public BatchGenerator(SpecGenerator specGenerator, int maxConcurrentSpecs) {
+        if (maxConcurrentSpecs <= 0) {
+            throw new IllegalArgumentException("Concurrent spec limit must be positive: " + maxConcurrentSpecs);
+        }
+        this.specGenerator = specGenerator;
+        this.permits = new Semaphore(maxConcurrentSpecs);
+    }
+
+    public Map<Path, Path> generate(List<Path> specFiles, Path outputDirectory) throws IOException {
+        generateWithStats(specFiles, outputDirectory);
+        return getOutputFiles(specFiles, outputDirectory);
+    }
+
+    // Статистика в порядке спецификаций
+    public List<GenerationStats> generateWithStats(List<Path> specFiles, Path outputDirectory) throws IOException {
+        Files.createDirectories(outputDirectory);
+        var outputFiles = getOutputFiles(specFiles, outputDirectory);
+
+        // Парсер, рендерер и ObjectMapper общие, а состояние разбора схем у каждой спецификации своё
+        var failures = new LinkedHashMap<Path, Exception>();
+        var stats = new ArrayList<GenerationStats>(outputFiles.size());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new LinkedHashMap<Path, CompletableFuture<GenerationStats>>();
+            outputFiles.forEach((specFile, outputFile) -> futures.put(specFile, CompletableFuture.supplyAsync(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    return specGenerator.generate(specFile, outputFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    permits.release();
+                }
+            }, executor)));
+
+            futures.forEach((specFile, future) -> {
+                try {
+                    stats.add(Futures.join(future));
+                } catch (RuntimeException e) {
+                    failures.put(specFile, e);
+                }
+            });
+        }
+
+        if (!failures.isEmpty()) {
+            var exception = new RuntimeException("Unable to build markdown for %d of %d spec files".formatted(failures.size(), specFiles.size()));
+            failures.forEach((specFile, e) -> exception.addSuppressed(new RuntimeException(specFile + ": " + e.getMessage(), e)));
+            throw exception;
+        }
+
+        return stats;
+    }
+
+    public static List<Path> findSpecFiles(List<String> inputs) throws IOException {
+        var specFiles = new LinkedHashSet<Path>();
+        for (var input : inputs) {
+            if (isGlob(input)) {
+                specFiles.addAll(findByGlob(input));
+                continue;
+            }
+
+            var path = Path.of(input);
+            if (Files.isDirectory(path)) {
+                try (var files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile).filter(BatchGenerator::isSpecFile).sorted().forEach(specFiles::add);
+                }
+            } else if (Files.isRegularFile(path)) {
+                specFiles.add(path);
+            } else {
+                throw new NoSuchFileException(input);
+            }
+        }
+        return new ArrayList<>(specFiles);
+    }
+
+    private static boolean isGlob(String input) {
+        return input.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    private static List<Path> findByGlob(String glob) throws IOException {
+        // Обход начинается с самой длинной части пути без спецсимволов
+        var normalizedGlob = glob.replace('\\', '/');
+        var wildcardIndex = 0;
+        while (wildcardIndex < normalizedGlob.length() && "*?[{".indexOf(normalizedGlob.charAt(wildcardIndex)) < 0) {
+            wildcardIndex++;
+        }
+        var baseEnd = normalizedGlob.lastIndexOf('/', wildcardIndex);
+        var baseDirectory = Path.of(baseEnd >= 0 ? normalizedGlob.substring(0, baseEnd + 1) : ".");
+        var pattern = baseEnd >= 0 ? normalizedGlob.substring(baseEnd + 1) : normalizedGlob;
+        var matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        // **/ в glob требует хотя бы один каталог, а **/*.yaml должен находить и файлы в самом базовом каталоге
+        var baseMatcher = pattern.startsWith("**/")
+                ? FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring("**/".length()))
+                : matcher;
+
+        if (!Files.isDirectory(baseDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(baseDirectory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> {
+                        var relativePath = baseDirectory.relativize(p);
+                        return matcher.matches(relativePath) || baseMatcher.matches(relativePath);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static boolean isSpecFile(Path path) {
+        var fileName = path.getFileName().toString();
+        var dotIndex = fileName.lastIndexOf('.');
+        return dotIndex > 0 && SPEC_EXTENSIONS.contains(fileName.substring(dotIndex + 1).toLowerCase());
+    }
+
+    public static Map<Path, Path> getOutputFiles(List<Path> specFiles, Path outputDirectory) {
+        // Одинаковые имена (например, openapi.yaml разных сервисов) различаются по имени каталога
+        var baseNames = new HashMap<String, Integer>();
+        specFiles.forEach(f -> baseNames.merge(getBaseName(f), 1, Integer::sum));
+
+        var outputFiles = new LinkedHashMap<Path, Path>();
+        var usedNames = new HashSet<String>();
+        for (var specFile : specFiles) {
+            var name = getBaseName(specFile);
+            var parent = specFile.toAbsolutePath().getParent();
+            if (baseNames.get(name) > 1 && parent != null && parent.getFileName() != null) {
+                name = parent.getFileName() + "-" + name;
+            }
+            var uniqueName = name;
+            for (int i = 2; !usedNames.add(uniqueName); i++) {
+                uniqueName = name + "-" + i;
+            }
+            outputFiles.put(specFile, outputDirectory.resolve(uniqueName + ".md"));
+        }
+        return outputFiles;
+    }
+
+    @FunctionalInterface
+    public interface SpecGenerator {
+        GenerationStats generate(Path specFile, Path outputFile) throws IOException;
+    }
+
+    private static String getBaseName(Path specFile) {
+        var fileName = specFile.getFileName().toString();
+        var dotIndex = fileName.lastIndexOf('.');
+        return dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.afterwhy.openapimd;
+
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.function.Function;
+
+// Локальные ссылки операции на components/parameters, requestBodies и responses - для чтения спецификации
+// без разрешения ссылок swagger-parser'ом; ссылки на схемы разрешаются отдельно
+final class ComponentReferences {
+    private static final String COMPONENTS_PREFIX = "#/components/";
+
+    private ComponentReferences() {
+    }
+
+    // reader - кто читает спецификацию, для сообщения о неподдерживаемой ссылке
+    static void resolve(Operation operation,
+                        Map<String, Parameter> parameters,
+                        Map<String, RequestBody> requestBodies,
+                        Map<String, ApiResponse> responses,
+                        String reader) {
+        if (operation.getParameters() != null) {
+            operation.setParameters(operation.getParameters().stream()
+                    .map(p -> resolve(p, Parameter::get$ref, "parameters", parameters, reader))
+                    .toList());
+        }
+        if (operation.getRequestBody() != null) {
+            operation.setRequestBody(resolve(operation.getRequestBody(), RequestBody::get$ref, "requestBodies", requestBodies, reader));
+        }
+        if (operation.getResponses() != null) {
+            operation.getResponses().replaceAll((_, response) -> resolve(response, ApiResponse::get$ref, "responses", responses, reader));
+        }
+    }
+
+    private static <T> T resolve(T value, Function<T, String> refGetter, String section, Map<String, T> components, String reader) {
+        var prefix = COMPONENTS_PREFIX + section + "/";
+        var visitedRefs = new HashSet<String>();
+        while (refGetter.apply(value) != null) {
+            var ref = refGetter.apply(value);
+            if (!ref.startsWith(prefix)) {
+                throw new UnsupportedOperationException("Only local " + prefix + " references are supported by " + reader + ": " + ref);
+            }
+            if (!visitedRefs.add(ref)) {
+                throw new IllegalStateException("Cyclic $ref: " + ref);
+            }
+            value = components.get(ref.substring(prefix.length()));
+            if (value == null) {
+                throw new IllegalStateException("Unresolved $ref: " + ref);
+            }
+        }
+        return value;
+    }
+}
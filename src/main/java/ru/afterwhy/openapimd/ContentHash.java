@@ -0,0 +1,73 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public class ContentHash {
+    private final MessageDigest digest;
+
+    public ContentHash() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String of(String value) {
+        return new ContentHash().add(value).hex();
+    }
+
+    public static String of(byte[] bytes) {
+        return new ContentHash().add(bytes).hex();
+    }
+
+    public ContentHash add(String value) {
+        // Длина перед значением, чтобы ("ab", "c") и ("a", "bc") давали разные хэши
+        if (value == null) {
+            return addLength(-1);
+        }
+        return add(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ContentHash add(byte[] bytes) {
+        addLength(bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    public ContentHash addFile(Path file) throws IOException {
+        addLength(Files.size(file));
+        try (InputStream is = Files.newInputStream(file)) {
+            var buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return this;
+    }
+
+    public String hex() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Первые 8 байт хэша, например 64-битное зерно для Random
+    public long toLong() {
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private ContentHash addLength(long length) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (length >>> shift));
+        }
+        return this;
+    }
+}
@@ -0,0 +1,362 @@
+package ru.afterwhy.openapimd;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import ru.afterwhy.openapimd.model.SpecOperation;
+import ru.afterwhy.openapimd.model.SpecSchema;
+import ru.afterwhy.openapimd.model.SpecTag;
+import ru.afterwhy.openapimd.model.Specification;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+public class DocumentGenerator {
+    // Меняется вместе с форматом вывода, чтобы не подставлять фрагменты, отрендеренные старой версией
+    private static final String CACHE_VERSION = "1";
+    private static final String INDEX_FILE = "index.md";
+
+    private final SpecParser specParser;
+    private final MdRenderer mdRenderer;
+    private final Locale locale;
+    private final FragmentCache fragmentCache;
+    private final boolean retainSchemas;
+    private final Long memoryBudget;
+    private final boolean splitOutput;
+    private final Map<Path, RetainedSchemas> retainedSchemas = new ConcurrentHashMap<>();
+
+    public DocumentGenerator(SpecParser specParser, MdRenderer mdRenderer, Locale locale) {
+        this(specParser, mdRenderer, locale, null);
+    }
+
+    public DocumentGenerator(SpecParser specParser, MdRenderer mdRenderer, Locale locale, FragmentCache fragmentCache) {
+        this(specParser, mdRenderer, locale, fragmentCache, false);
+    }
+
+    // retainSchemas - держать разобранные компонентные схемы в памяти между запусками (режим наблюдения)
+    public DocumentGenerator(SpecParser specParser, MdRenderer mdRenderer, Locale locale, FragmentCache fragmentCache, boolean retainSchemas) {
+        this(specParser, mdRenderer, locale, fragmentCache, retainSchemas, null);
+    }
+
+    // memoryBudget - байты кучи, под которые подбирается размер пакета: без кэша фрагментов эндпойнты
+    // строятся и пишутся по тэгам небольшими пакетами. Прочитанная спецификация и компонентные схемы
+    // в память всё равно попадают целиком, их бюджет не уменьшает
+    public DocumentGenerator(SpecParser specParser, MdRenderer mdRenderer, Locale locale, FragmentCache fragmentCache, boolean retainSchemas, Long memoryBudget) {
+        this(specParser, mdRenderer, locale, fragmentCache, retainSchemas, memoryBudget, false);
+    }
+
+    // splitOutput - вместо файла docs.md пишется каталог docs/: index.md, tags/*.md и schemas/*.md
+    public DocumentGenerator(SpecParser specParser, MdRenderer mdRenderer, Locale locale, FragmentCache fragmentCache, boolean retainSchemas,
+                             Long memoryBudget, boolean splitOutput) {
+        this.specParser = specParser;
+        this.mdRenderer = mdRenderer;
+        this.locale = locale;
+        this.fragmentCache = fragmentCache;
+        this.retainSchemas = retainSchemas;
+        this.memoryBudget = memoryBudget;
+        this.splitOutput = splitOutput;
+    }
+
+    // false - документ не изменился и не перезаписывался
+    public boolean generate(Path specFile, Path outputFile) throws IOException {
+        return generateWithStats(specFile, outputFile).updated();
+    }
+
+    public GenerationStats generateWithStats(Path specFile, Path outputFile) throws IOException {
+        var stats = new GenerationStats(specFile, outputFile);
+        var startedAt = System.nanoTime();
+        var updated = generate(specFile, outputFile, stats);
+        stats.finish(System.nanoTime() - startedAt, updated);
+        return stats;
+    }
+
+    private boolean generate(Path specFile, Path outputFile, GenerationStats stats) throws IOException {
+        if (splitOutput) {
+            return generateSplit(specFile, getOutputDirectory(outputFile), stats);
+        }
+        if (fragmentCache == null && memoryBudget != null) {
+            return generateInBatches(specFile, outputFile, stats, new MemoryBudget(memoryBudget));
+        }
+        if (fragmentCache == null) {
+            var openAPI = stats.measure(GenerationStats.Phase.READ, () -> specParser.read(specFile.toString()));
+            var schemas = stats.measure(GenerationStats.Phase.SCHEMAS, () -> specParser.parseSchemas(openAPI, stats));
+            var spec = stats.measure(GenerationStats.Phase.ENDPOINTS, () -> specParser.parse(openAPI, schemas, _ -> true));
+            return writeIfChanged(outputFile, writer -> mdRenderer.render(spec, writer), stats);
+        }
+
+        var manifest = stats.measure(GenerationStats.Phase.CACHE, () -> fragmentCache.readManifest(outputFile));
+        if (manifest != null && manifest.isUpToDate(getSalt())) {
+            return false;
+        }
+
+        var inputFiles = ReferencedFiles.collect(specFile);
+        var inputsHash = new ContentHash().add(getSalt());
+        for (var inputFile : inputFiles) {
+            inputsHash.add(inputFile.toString()).addFile(inputFile);
+        }
+        var inputs = new ArrayList<FragmentCache.FileStamp>();
+        for (var inputFile : inputFiles) {
+            inputs.add(FragmentCache.FileStamp.of(inputFile));
+        }
+        var inputsHashHex = inputsHash.hex();
+
+        if (manifest != null && manifest.inputsHash().equals(inputsHashHex) && manifest.output().matches()) {
+            // Файлы только «потрогали»: содержимое то же, обновляем отметки времени
+            fragmentCache.writeManifest(outputFile, new FragmentCache.Manifest(getSalt(), inputsHashHex, inputs, manifest.output(), manifest.fragments()));
+            return false;
+        }
+
+        var fragmentKeys = new ArrayList<String>();
+        var updated = generateFromFragments(specFile, outputFile, stats, fragmentKeys);
+        fragmentCache.writeManifest(outputFile, new FragmentCache.Manifest(getSalt(), inputsHashHex, inputs, FragmentCache.FileStamp.of(outputFile.toAbsolutePath().normalize()),
+                fragmentKeys));
+        return updated;
+    }
+
+    // fragmentKeys - сюда добавляются ключи всех фрагментов документа, включая эндпойнты внутри попавших в кэш тэгов
+    private boolean generateFromFragments(Path specFile, Path outputFile, GenerationStats stats, List<String> fragmentKeys) throws IOException {
+        var openAPI = stats.measure(GenerationStats.Phase.READ, () -> specParser.read(specFile.toString()));
+        var keys = stats.measure(GenerationStats.Phase.CACHE, () -> new FragmentKeys(openAPI, getSalt()));
+        var tags = SpecParser.getTags(openAPI);
+
+        // Сначала только ключи и попадания в кэш: модель строится, лишь если чего-то не хватает
+        var headerKey = keys.header(tags);
+        var tagSections = new ArrayList<TagSection>(tags.size());
+        var header = stats.measure(GenerationStats.Phase.CACHE, () -> {
+            var cachedHeader = getFragment(headerKey, stats);
+            for (var tag : tags) {
+                var endpointKeys = tag.operations().stream().map(keys::endpoint).toList();
+                var tagKey = keys.tag(tag, endpointKeys);
+                tagSections.add(new TagSection(tag, tagKey, getFragment(tagKey, stats), endpointKeys));
+            }
+            return cachedHeader;
+        });
+        fragmentKeys.add(headerKey);
+        for (var section : tagSections) {
+            fragmentKeys.add(section.key());
+            fragmentKeys.addAll(section.endpointKeys());
+        }
+        var missing = header == null || tagSections.stream().anyMatch(s -> s.content() == null);
+
+        Specification spec = null;
+        // Фрагменты эндпойнтов читаются один раз: найденные здесь же и подставляются в секции тэгов
+        var endpointFragments = new HashMap<String, String>();
+        if (missing) {
+            // Заголовку нужны все эндпойнты, иначе строятся только те, чьих фрагментов нет
+            var missingOperations = new HashSet<SpecOperation>();
+            for (var section : tagSections) {
+                for (int i = 0; section.content() == null && i < section.endpointKeys().size(); i++) {
+                    var endpointKey = section.endpointKeys().get(i);
+                    if (endpointFragments.containsKey(endpointKey)) {
+                        continue;
+                    }
+                    var endpoint = getFragment(endpointKey, stats);
+                    if (endpoint != null) {
+                        endpointFragments.put(endpointKey, endpoint);
+                    } else {
+                        missingOperations.add(section.tag().operations().get(i));
+                    }
+                }
+            }
+            var schemas = stats.measure(GenerationStats.Phase.SCHEMAS, () -> getSchemas(specFile, openAPI, keys.schemas(), stats));
+            var includeAll = header == null;
+            spec = stats.measure(GenerationStats.Phase.ENDPOINTS, () -> specParser.parse(openAPI, schemas, includeAll ? _ -> true : missingOperations::contains));
+        }
+
+        // Фрагменты пишутся в файл по одному и в общую строку не собираются
+        var renderedSpec = spec;
+        return writeIfChanged(outputFile, writer -> {
+            if (header == null) {
+                var renderedHeader = mdRenderer.renderHeader(renderedSpec);
+                fragmentCache.putFragment(headerKey, renderedHeader);
+                writer.write(renderedHeader);
+            } else {
+                writer.write(header);
+            }
+            for (var section : tagSections) {
+                writer.write(section.content() != null ? section.content() : renderTagSection(renderedSpec, section, endpointFragments));
+            }
+        }, stats);
+    }
+
+    private boolean generateInBatches(Path specFile, Path outputFile, GenerationStats stats, MemoryBudget budget) throws IOException {
+        var openAPI = stats.measure(GenerationStats.Phase.READ, () -> specParser.read(specFile.toString()));
+        var schemas = stats.measure(GenerationStats.Phase.SCHEMAS, () -> specParser.parseSchemas(openAPI, stats));
+        var tags = SpecParser.getTags(openAPI);
+
+        var tempFile = createTempFile(outputFile);
+        try {
+            try (var writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                var info = openAPI.getInfo();
+                writer.write(stats.measure(GenerationStats.Phase.RENDER, () -> mdRenderer.renderHeader(
+                        info.getTitle(), info.getDescription(), tags, operation -> SpecParser.getSummary(openAPI, operation))));
+
+                for (var tag : tags) {
+                    writer.write(mdRenderer.renderTagHeading(tag));
+                    var operations = tag.operations();
+                    for (int from = 0; from < operations.size(); ) {
+                        var batch = operations.subList(from, Math.min(operations.size(), from + budget.batchSize()));
+                        // Модель пакета (эндпойнты, встроенные схемы и их примеры) после записи больше не нужна;
+                        // операции и тэги извлечены один раз, в пакете разбираются только его операции
+                        var endpoints = stats.measure(GenerationStats.Phase.ENDPOINTS, () -> specParser.parseEndpoints(openAPI, schemas, batch));
+                        for (var endpoint : endpoints) {
+                            writer.write(stats.measure(GenerationStats.Phase.RENDER, () -> mdRenderer.renderEndpoint(endpoint)));
+                        }
+                        from += batch.size();
+                        if (budget.afterBatch()) {
+                            mdRenderer.clearFormattedExamples();
+                        }
+                    }
+                }
+            }
+            return stats.measure(GenerationStats.Phase.WRITE, () -> replaceIfChanged(tempFile, outputFile, stats));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private boolean generateSplit(Path specFile, Path outputDirectory, GenerationStats stats) throws IOException {
+        var openAPI = stats.measure(GenerationStats.Phase.READ, () -> specParser.read(specFile.toString()));
+        var schemas = stats.measure(GenerationStats.Phase.SCHEMAS, () -> specParser.parseSchemas(openAPI, stats));
+        var spec = stats.measure(GenerationStats.Phase.ENDPOINTS, () -> specParser.parse(openAPI, schemas, _ -> true));
+
+        var usedNames = new HashSet<String>();
+        var tagFiles = new LinkedHashMap<SpecTag, String>();
+        for (var tag : spec.tags()) {
+            tagFiles.put(tag, "tags/" + MultiFileWriter.toFileName(tag.name(), usedNames));
+        }
+        usedNames.clear();
+        var schemaFiles = new IdentityHashMap<SpecSchema, String>();
+        for (var schema : spec.schemas()) {
+            schemaFiles.put(schema, "schemas/" + MultiFileWriter.toFileName(schema.name(), usedNames));
+        }
+
+        // Файлы рендерятся в тех же задачах, что и пишутся, поэтому фазы рендера и записи не разделяются
+        var files = new LinkedHashMap<String, Supplier<String>>();
+        files.put(INDEX_FILE, () -> mdRenderer.renderIndex(spec, tagFiles::get, schemaFiles::get));
+        tagFiles.forEach((tag, file) -> files.put(file, () -> mdRenderer.renderTag(spec, tag)));
+        schemaFiles.forEach((schema, file) -> files.put(file, () -> mdRenderer.renderSchema(schema)));
+
+        var result = stats.measure(GenerationStats.Phase.WRITE, () -> MultiFileWriter.write(outputDirectory, files));
+        stats.bytesWritten(result.bytesWritten());
+        return result.changedFiles() > 0;
+    }
+
+    private static Path getOutputDirectory(Path outputFile) {
+        var fileName = outputFile.getFileName().toString();
+        return fileName.endsWith(".md")
+                ? outputFile.resolveSibling(fileName.substring(0, fileName.length() - ".md".length()))
+                : outputFile;
+    }
+
+    private String getFragment(String key, GenerationStats stats) throws IOException {
+        var fragment = fragmentCache.getFragment(key);
+        if (fragment != null) {
+            stats.fragmentHit();
+        } else {
+            stats.fragmentMiss();
+        }
+        return fragment;
+    }
+
+    // endpointFragments - уже прочитанные из кэша фрагменты эндпойнтов, сюда же добавляются отрендеренные
+    private String renderTagSection(Specification spec, TagSection section, Map<String, String> endpointFragments) throws IOException {
+        var content = new StringBuilder(mdRenderer.renderTagHeading(section.tag()));
+        for (int i = 0; i < section.tag().operations().size(); i++) {
+            var operation = section.tag().operations().get(i);
+            var endpointKey = section.endpointKeys().get(i);
+            var endpoint = endpointFragments.get(endpointKey);
+            if (endpoint == null) {
+                endpoint = mdRenderer.renderEndpoint(spec.getEndpoint(operation.httpMethod(), operation.path()));
+                fragmentCache.putFragment(endpointKey, endpoint);
+                endpointFragments.put(endpointKey, endpoint);
+            }
+            content.append(endpoint);
+        }
+
+        var tagSection = content.toString();
+        fragmentCache.putFragment(section.key(), tagSection);
+        return tagSection;
+    }
+
+    private SpecParser.ParsedSchemas getSchemas(Path specFile, OpenAPI openAPI, String schemasKey, GenerationStats stats) {
+        if (!retainSchemas) {
+            return specParser.parseSchemas(openAPI, stats);
+        }
+
+        var key = specFile.toAbsolutePath().normalize();
+        var retained = retainedSchemas.get(key);
+        if (retained != null && retained.key().equals(schemasKey)) {
+            return retained.schemas();
+        }
+        var schemas = specParser.parseSchemas(openAPI, stats);
+        retainedSchemas.put(key, new RetainedSchemas(schemasKey, schemas));
+        return schemas;
+    }
+
+    private String getSalt() {
+        return CACHE_VERSION + ":" + locale.toLanguageTag() + ":" + mdRenderer.getPlanFingerprint()
+                + (specParser.isDeterministic() ? ":deterministic" : "");
+    }
+
+    // Документ рендерится прямо во временный файл, целиком в памяти он не собирается
+    static boolean writeIfChanged(Path outputFile, DocumentWriter document, GenerationStats stats) throws IOException {
+        var tempFile = createTempFile(outputFile);
+        try {
+            stats.measure(GenerationStats.Phase.RENDER, () -> {
+                try (var writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                    document.write(writer);
+                }
+                return null;
+            });
+            return stats.measure(GenerationStats.Phase.WRITE, () -> replaceIfChanged(tempFile, outputFile, stats));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // Документ собирается во временном файле рядом с результатом и заменяет его, только если изменился.
+    // Не Files.createTempFile: его права 0600 переехали бы на сам документ, а здесь они по umask, как у обычной записи
+    static Path createTempFile(Path outputFile) throws IOException {
+        var directory = outputFile.toAbsolutePath().getParent();
+        while (true) {
+            var tempFile = directory.resolve(outputFile.getFileName() + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                return Files.createFile(tempFile);
+            } catch (FileAlreadyExistsException e) {
+                // Имя занято другой записью, пробуем следующее
+            }
+        }
+    }
+
+    private static boolean replaceIfChanged(Path tempFile, Path outputFile, GenerationStats stats) throws IOException {
+        // Тот же документ не перезаписывается: время изменения файла и кэши после нас остаются прежними
+        var size = Files.size(tempFile);
+        if (Files.isRegularFile(outputFile)
+                && Files.size(outputFile) == size
+                && Files.mismatch(outputFile, tempFile) == -1) {
+            return false;
+        }
+        Files.move(tempFile, outputFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        stats.bytesWritten(size);
+        return true;
+    }
+
+    @FunctionalInterface
+    interface DocumentWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    private record RetainedSchemas(String key, SpecParser.ParsedSchemas schemas) {
+    }
+
+    private record TagSection(SpecTag tag, String key, String content, List<String> endpointKeys) {
+    }
+}
@@ -0,0 +1,14 @@
+package ru.afterwhy.openapimd;
+
+import jdk.jfr.*;
+
+// Событий по одному на пример много, поэтому по умолчанию выключено
+@Name("ru.afterwhy.openapimd.ExampleGeneration")
+@Label("Example Generation")
+@Category({"OpenAPI to Markdown"})
+@Enabled(false)
+@StackTrace(false)
+class ExampleGenerationEvent extends Event {
+    @Label("Schema")
+    String schema;
+}
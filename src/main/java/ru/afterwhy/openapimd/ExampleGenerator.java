@@ -1,11 +1,13 @@
 package ru.afterwhy.openapimd;
 
 import io.swagger.v3.oas.models.media.*;
+import ru.afterwhy.openapimd.model.ExamplePlaceholder;
 import ru.afterwhy.openapimd.model.SpecSchema;
 import ru.afterwhy.openapimd.model.SpecSchemaProperty;
 
-import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -15,35 +17,40 @@ import java.util.stream.Collectors;
 
 public class ExampleGenerator {
     private static final Random random = new Random();
+    private static final OffsetDateTime DETERMINISTIC_NOW = OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
 
-    public static Object getExample(Schema<?> schema, SpecSchema itemSpec, List<SpecSchemaProperty> parameters, SchemaGetter storage, Locale locale) {
-        var resourceBundle = ResourceBundle.getBundle("locale", locale);
+    public static Object getExample(Schema<?> schema, SpecSchema itemSpec, List<SpecSchemaProperty> parameters, SchemaGetter storage) {
+        return getExample(schema, itemSpec, parameters, storage, null);
+    }
 
+    // seedPath - путь к схеме (имя схемы и свойства); если задан, пример не зависит ни от запуска, ни от времени
+    public static Object getExample(Schema<?> schema, SpecSchema itemSpec, List<SpecSchemaProperty> parameters, SchemaGetter storage, String seedPath) {
         if (parameters.isEmpty()) {
-            return getExampleFromSchema(schema, itemSpec, resourceBundle);
+            return getExampleFromSchema(schema, itemSpec, storage, ExampleValues.of(seedPath));
         }
 
-        return parameters
+        // Неизменяемые узлы: пример именованной схемы один на все места, где она используется
+        return Collections.unmodifiableMap(parameters
                 .stream()
-                .map(p -> Map.entry(p.name(), p.example()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+                .map(p -> Map.entry(p.name(), p.example().get()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
     }
 
-    private static Object getExampleFromSchema(Schema<?> schema, SpecSchema itemSpec, ResourceBundle resourceBundle) {
+    private static Object getExampleFromSchema(Schema<?> schema, SpecSchema itemSpec, SchemaGetter storage, ExampleValues values) {
         // Проверка на типы схем
         return switch (schema) {
-            case ComposedSchema _, ObjectSchema _, JsonSchema _, MapSchema _ -> new HashMap<>();
-            case ArraySchema arraySchema -> getExampleForArray(arraySchema, itemSpec, resourceBundle);
+            case ComposedSchema _, ObjectSchema _, JsonSchema _, MapSchema _ -> Map.of();
+            case ArraySchema arraySchema -> getExampleForArray(arraySchema, itemSpec, storage, values);
             case ByteArraySchema byteArraySchema -> getExampleForByteArray(byteArraySchema);
             case FileSchema fileSchema -> getExampleForFile(fileSchema);
-            case BooleanSchema booleanSchema -> getExampleForBoolean(booleanSchema);
-            case IntegerSchema integerSchema -> getExampleForInteger(integerSchema);
-            case NumberSchema numberSchema -> getExampleForNumber(numberSchema);
-            case StringSchema _, PasswordSchema _ -> getExampleForString((Schema<String>) schema, resourceBundle);
+            case BooleanSchema booleanSchema -> getExampleForBoolean(booleanSchema, values);
+            case IntegerSchema integerSchema -> getExampleForInteger(integerSchema, values);
+            case NumberSchema numberSchema -> getExampleForNumber(numberSchema, values);
+            case StringSchema _, PasswordSchema _ -> getExampleForString((Schema<String>) schema);
             case EmailSchema emailSchema -> getExampleForEmail(emailSchema);
-            case UUIDSchema uuidSchema -> getExampleForUuid(uuidSchema);
-            case DateSchema dateSchema -> getExampleForDate(dateSchema);
-            case DateTimeSchema dateTimeSchema -> getExampleForDateTime(dateTimeSchema);
+            case UUIDSchema uuidSchema -> getExampleForUuid(uuidSchema, values);
+            case DateSchema dateSchema -> getExampleForDate(dateSchema, values);
+            case DateTimeSchema dateTimeSchema -> getExampleForDateTime(dateTimeSchema, values);
             case null, default ->
                     throw new UnsupportedOperationException("Unsupported schema type: " + (schema != null ? schema.getClass().getSimpleName() : null));
         };
@@ -61,40 +68,40 @@ public class ExampleGenerator {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
-    private static List<Object> getExampleForArray(ArraySchema schema, SpecSchema itemSpec, ResourceBundle resourceBundle) {
-        List<Object> exampleArray = new ArrayList<>();
+    private static List<Object> getExampleForArray(ArraySchema schema, SpecSchema itemSpec, SchemaGetter storage, ExampleValues values) {
         var itemsSchema = schema.getItems();
 
         if (itemsSchema != null) {
-            exampleArray.add(getExampleFromSchema(itemsSchema, itemSpec.itemSpec(), resourceBundle));
-        } else {
-            exampleArray.add(new Object());
+            // Элементы часто заданы через $ref, а у заглушки рекурсивной схемы нет itemSpec
+            var itemsItemSpec = itemSpec != null ? itemSpec.itemSpec() : null;
+            return Collections.singletonList(getExampleFromSchema(storage.getFullSchema(itemsSchema), itemsItemSpec, storage, values.forItems()));
         }
 
-        return exampleArray;
+        return Collections.singletonList(new Object());
     }
 
-    private static String getExampleForString(Schema<String> schema, ResourceBundle resourceBundle) {
+    private static Object getExampleForString(Schema<String> schema) {
         if (schema.getExample() != null) {
             return schema.getExample().toString();
         }
 
+        // Текст по умолчанию зависит от локали и подставляется при рендере
         return generateExample(
                 schema,
                 Object::toString,
-                () -> resourceBundle.getString("default-examples.string")
+                () -> ExamplePlaceholder.DEFAULT_STRING
         );
     }
 
-    private static Boolean getExampleForBoolean(BooleanSchema schema) {
+    private static Boolean getExampleForBoolean(BooleanSchema schema, ExampleValues values) {
         return generateExample(
                 schema,
                 o -> Objects.equals(o.toString(), "true"),
-                random::nextBoolean
+                values.random()::nextBoolean
         );
     }
 
-    private static UUID getExampleForUuid(UUIDSchema schema) {
+    private static UUID getExampleForUuid(UUIDSchema schema, ExampleValues values) {
         return generateExample(
                 schema,
                 example -> {
@@ -105,44 +112,44 @@ public class ExampleGenerator {
                         return null;
                     }
                 },
-                UUID::randomUUID
+                values::uuid
         );
     }
 
-    private static Number getExampleForInteger(IntegerSchema schema) {
+    private static Number getExampleForInteger(IntegerSchema schema, ExampleValues values) {
         return switch (schema.getFormat()) {
-            case "int32" -> generateExampleForInt(schema);
-            case null -> generateExampleForInt(schema);
-            case "int64" -> generateExampleForLong(schema);
+            case "int32" -> generateExampleForInt(schema, values);
+            case null -> generateExampleForInt(schema, values);
+            case "int64" -> generateExampleForLong(schema, values);
             default -> throw new IllegalStateException("Unexpected integer format value: " + schema.getFormat());
         };
     }
 
-    private static Integer generateExampleForInt(IntegerSchema schema) {
+    private static Integer generateExampleForInt(IntegerSchema schema, ExampleValues values) {
         return generateExample(
                 schema,
                 example -> parseNumber(example, Integer::parseInt),
-                random::nextInt
+                values.random()::nextInt
         );
     }
 
-    private static Long generateExampleForLong(IntegerSchema schema) {
+    private static Long generateExampleForLong(IntegerSchema schema, ExampleValues values) {
         return generateExample(
                 schema,
                 example -> parseNumber(example, Long::parseLong),
-                random::nextLong
+                values.random()::nextLong
         );
     }
 
-    private static Number getExampleForNumber(NumberSchema schema) {
+    private static Number getExampleForNumber(NumberSchema schema, ExampleValues values) {
         return switch (schema.getFormat()) {
-            case "float" -> generateExampleForFloat(schema);
-            case "numner" -> generateExampleForDouble(schema);
+            case "float" -> generateExampleForFloat(schema, values);
+            case "numner" -> generateExampleForDouble(schema, values);
             default -> throw new IllegalStateException("Unexpected integer format value: " + schema.getFormat());
         };
     }
 
-    private static Float generateExampleForFloat(NumberSchema schema) {
+    private static Float generateExampleForFloat(NumberSchema schema, ExampleValues values) {
         return generateExample(
                 schema,
                 example -> {
@@ -153,15 +160,15 @@ public class ExampleGenerator {
                         return null;
                     }
                 },
-                random::nextFloat
+                values.random()::nextFloat
         );
     }
 
-    private static Double generateExampleForDouble(NumberSchema schema) {
+    private static Double generateExampleForDouble(NumberSchema schema, ExampleValues values) {
         return generateExample(
                 schema,
                 example -> parseNumber(example, Double::parseDouble),
-                random::nextDouble
+                values.random()::nextDouble
         );
     }
 
@@ -174,19 +181,19 @@ public class ExampleGenerator {
         }
     }
 
-    private static String getExampleForDate(DateSchema schema) {
+    private static String getExampleForDate(DateSchema schema, ExampleValues values) {
         return generateExample(
                 schema,
                 Object::toString,
-                () -> DateTimeFormatter.ISO_DATE.format(LocalDateTime.now().minusDays(random.nextInt(365)))
+                () -> DateTimeFormatter.ISO_DATE.format(values.now().toLocalDateTime().minusDays(values.random().nextInt(365)))
         );
     }
 
-    private static String getExampleForDateTime(DateTimeSchema schema) {
+    private static String getExampleForDateTime(DateTimeSchema schema, ExampleValues values) {
         return generateExample(
                 schema,
                 Object::toString,
-                () -> DateTimeFormatter.ISO_DATE_TIME.format(OffsetDateTime.now().minusDays(random.nextInt(365)))
+                () -> DateTimeFormatter.ISO_DATE_TIME.format(values.now().minusDays(values.random().nextInt(365)))
         );
     }
 
@@ -202,4 +209,22 @@ public class ExampleGenerator {
 
         return defaultValueSupplier.get();
     }
+
+    private record ExampleValues(Random random, OffsetDateTime now, String seedPath) {
+
+        // Зерно - 64 бита SHA-256 пути: у String.hashCode их 32, и у похожих путей зёрна совпадают чаще
+        static ExampleValues of(String seedPath) {
+            return seedPath != null
+                    ? new ExampleValues(new Random(new ContentHash().add(seedPath).toLong()), DETERMINISTIC_NOW, seedPath)
+                    : new ExampleValues(ExampleGenerator.random, OffsetDateTime.now(), null);
+        }
+
+        ExampleValues forItems() {
+            return seedPath != null ? of(seedPath + "[]") : this;
+        }
+
+        UUID uuid() {
+            return seedPath != null ? UUID.nameUUIDFromBytes(seedPath.getBytes(StandardCharsets.UTF_8)) : UUID.randomUUID();
+        }
+    }
 }
@@ -0,0 +1,265 @@
+package ru.afterwhy.openapimd;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.ComposedSchema;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import io.swagger.v3.parser.OpenAPIV3Parser;
+import io.swagger.v3.parser.core.models.ParseOptions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Внешние документы по $ref (общие common.yaml, errors.yaml и т.п.) разбираются один раз на все спецификации запуска.
+// Ключ - канонический путь вместе с размером и временем изменения, поэтому изменённый файл читается заново.
+// Схемы из них переносятся в components спецификации под своими именами, как будто были объявлены в ней
+public class ExternalRefCache {
+    public static final int DEFAULT_MAX_DOCUMENTS = 32;
+
+    private static final String COMPONENTS_SCHEMAS_PREFIX = "#/components/schemas/";
+
+    private final LruCache<DocumentKey, Document> documents;
+
+    public ExternalRefCache() {
+        this(DEFAULT_MAX_DOCUMENTS);
+    }
+
+    public ExternalRefCache(int maxDocuments) {
+        this.documents = new LruCache<>(maxDocuments);
+    }
+
+    // Заменяет внешние ссылки на схемы ссылками на components. Спецификация читается без разрешения ссылок
+    // swagger-parser'ом, поэтому локальные ссылки операций на параметры, тела запросов и ответы разрешаются здесь же
+    void resolve(OpenAPI openAPI, Path specFile) {
+        resolveComponentReferences(openAPI);
+        var root = specFile.toAbsolutePath().normalize();
+        var importer = new Importer(openAPI, root);
+        var components = openAPI.getComponents();
+        if (components != null) {
+            if (components.getSchemas() != null) {
+                List.copyOf(components.getSchemas().values()).forEach(importer::walk);
+            }
+            if (components.getParameters() != null) {
+                components.getParameters().values().forEach(p -> importer.walk(p.getSchema()));
+            }
+            if (components.getRequestBodies() != null) {
+                components.getRequestBodies().values().forEach(r -> importer.walk(r.getContent()));
+            }
+            if (components.getResponses() != null) {
+                components.getResponses().values().forEach(r -> importer.walk(r.getContent()));
+            }
+        }
+        if (openAPI.getPaths() != null) {
+            for (var pathItem : openAPI.getPaths().values()) {
+                if (pathItem.getParameters() != null) {
+                    pathItem.getParameters().forEach(p -> importer.walk(p.getSchema()));
+                }
+                for (var operation : pathItem.readOperations()) {
+                    if (operation.getParameters() != null) {
+                        operation.getParameters().forEach(p -> importer.walk(p.getSchema()));
+                    }
+                    if (operation.getRequestBody() != null) {
+                        importer.walk(operation.getRequestBody().getContent());
+                    }
+                    if (operation.getResponses() != null) {
+                        operation.getResponses().values().forEach(r -> importer.walk(r.getContent()));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void resolveComponentReferences(OpenAPI openAPI) {
+        if (openAPI.getPaths() == null) {
+            return;
+        }
+        var components = openAPI.getComponents();
+        var parameters = components != null && components.getParameters() != null ? components.getParameters() : Map.<String, Parameter>of();
+        var requestBodies = components != null && components.getRequestBodies() != null ? components.getRequestBodies() : Map.<String, RequestBody>of();
+        var responses = components != null && components.getResponses() != null ? components.getResponses() : Map.<String, ApiResponse>of();
+        for (var pathItem : openAPI.getPaths().values()) {
+            for (var operation : pathItem.readOperations()) {
+                ComponentReferences.resolve(operation, parameters, requestBodies, responses, "--ref-cache");
+            }
+        }
+    }
+
+    private Document getDocument(Path file) throws IOException {
+        var canonicalFile = file.toRealPath();
+        var attributes = Files.readAttributes(canonicalFile, BasicFileAttributes.class);
+        var key = new DocumentKey(canonicalFile, attributes.size(), attributes.lastModifiedTime());
+        var document = documents.get(key);
+        if (document == null) {
+            // Параллельные спецификации могут прочитать документ одновременно: результат тот же, в кэше остаётся один
+            document = readDocument(canonicalFile);
+            documents.put(key, document);
+        }
+        return document;
+    }
+
+    private static Document readDocument(Path file) {
+        var options = new ParseOptions();
+        options.setResolve(false);
+        var openAPI = new OpenAPIV3Parser().read(file.toString(), null, options);
+        if (openAPI == null) {
+            throw new RuntimeException("Unable to parse referenced file: " + file);
+        }
+        var schemas = openAPI.getComponents() != null && openAPI.getComponents().getSchemas() != null
+                ? Collections.unmodifiableMap(new LinkedHashMap<>(openAPI.getComponents().getSchemas()))
+                : Map.<String, Schema>of();
+        // Схема импортируется под своим именем, поэтому имя задаётся здесь, а разбор схем его уже не меняет
+        schemas.forEach((name, schema) -> schema.setName(name));
+
+        // Схемы документа общие для всех спецификаций, поэтому ссылки в них переписываются один раз, до того
+        // как документ попадёт в кэш, а откуда брать каждую схему, запоминается отдельно
+        var references = new IdentityHashMap<Schema<?>, SchemaSource>();
+        var visited = Collections.<Schema<?>>newSetFromMap(new IdentityHashMap<>());
+        var stack = new ArrayDeque<Schema>(schemas.values());
+        while (!stack.isEmpty()) {
+            var schema = stack.pop();
+            if (!visited.add(schema)) {
+                continue;
+            }
+            if (schema.get$ref() != null) {
+                var source = SchemaSource.of(schema.get$ref(), file);
+                references.put(schema, source);
+                schema.set$ref(COMPONENTS_SCHEMAS_PREFIX + source.name());
+                continue;
+            }
+            forEachChild(schema, stack::push);
+        }
+        return new Document(schemas, references);
+    }
+
+    private static void forEachChild(Schema<?> schema, Consumer<Schema> action) {
+        if (schema.getProperties() != null) {
+            schema.getProperties().values().forEach(action);
+        }
+        if (schema.getItems() != null) {
+            action.accept(schema.getItems());
+        }
+        if (schema.getAdditionalProperties() instanceof Schema<?> additionalProperties) {
+            action.accept(additionalProperties);
+        }
+        if (schema instanceof ComposedSchema composedSchema) {
+            for (var members : Arrays.asList(composedSchema.getAllOf(), composedSchema.getOneOf(), composedSchema.getAnyOf())) {
+                if (members != null) {
+                    members.forEach(action);
+                }
+            }
+        }
+    }
+
+    private record DocumentKey(Path file, long size, FileTime lastModified) {
+    }
+
+    private record Document(Map<String, Schema> schemas, Map<Schema<?>, SchemaSource> references) {
+    }
+
+    private record SchemaSource(Path file, String name) {
+
+        // Ссылка относительно документа base: 'common.yaml#/components/schemas/Error' или '#/components/schemas/Error'
+        static SchemaSource of(String ref, Path base) {
+            var hashIndex = ref.indexOf('#');
+            var filePart = hashIndex >= 0 ? ref.substring(0, hashIndex) : ref;
+            var fragment = hashIndex >= 0 ? ref.substring(hashIndex) : "";
+            var file = filePart.isEmpty() ? base : base.resolveSibling(filePart).normalize();
+            // Файл-схема целиком ('Error.yaml') или вложенный путь внутри схемы кэшем не поддерживаются
+            if (!fragment.startsWith(COMPONENTS_SCHEMAS_PREFIX) || fragment.indexOf('/', COMPONENTS_SCHEMAS_PREFIX.length()) >= 0) {
+                throw new IllegalArgumentException("Schema reference '%s' in %s is not supported with --ref-cache: only '<file>#/components/schemas/<name>' references are"
+                        .formatted(ref, base));
+            }
+            return new SchemaSource(file, fragment.substring(COMPONENTS_SCHEMAS_PREFIX.length()));
+        }
+    }
+
+    private class Importer {
+        private final Map<String, Schema> targetSchemas;
+        private final Path root;
+        private final Map<String, SchemaSource> importedNames = new HashMap<>();
+        private final Set<Schema<?>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Importer(OpenAPI openAPI, Path root) {
+            if (openAPI.getComponents() == null) {
+                openAPI.setComponents(new Components());
+            }
+            if (openAPI.getComponents().getSchemas() == null) {
+                openAPI.getComponents().setSchemas(new LinkedHashMap<>());
+            }
+            this.targetSchemas = openAPI.getComponents().getSchemas();
+            this.root = root;
+        }
+
+        void walk(Content content) {
+            if (content != null) {
+                content.values().forEach(mediaType -> walk(mediaType.getSchema()));
+            }
+        }
+
+        // Схема самой спецификации: её объекты не общие, внешние ссылки переписываются на месте
+        void walk(Schema<?> schema) {
+            if (schema == null || !visited.add(schema)) {
+                return;
+            }
+            var ref = schema.get$ref();
+            if (ref == null) {
+                forEachChild(schema, this::walk);
+            } else if (!ref.startsWith("#")) {
+                var source = SchemaSource.of(ref, root);
+                importSchema(source);
+                schema.set$ref(COMPONENTS_SCHEMAS_PREFIX + source.name());
+            }
+        }
+
+        // Схема из кэшированного документа: ссылки уже переписаны, источники берутся из документа
+        private void walk(Schema<?> schema, Document document) {
+            if (!visited.add(schema)) {
+                return;
+            }
+            var source = document.references().get(schema);
+            if (source != null) {
+                importSchema(source);
+            } else {
+                forEachChild(schema, child -> walk(child, document));
+            }
+        }
+
+        private void importSchema(SchemaSource source) {
+            var previous = importedNames.get(source.name());
+            if (previous != null) {
+                if (!previous.equals(source)) {
+                    throw new IllegalArgumentException("Schema name '%s' is imported from both %s and %s".formatted(source.name(), previous.file(), source.file()));
+                }
+                return;
+            }
+            if (targetSchemas.containsKey(source.name())) {
+                throw new IllegalArgumentException("Schema '%s' from %s conflicts with a schema of the spec".formatted(source.name(), source.file()));
+            }
+
+            Document document;
+            try {
+                document = getDocument(source.file());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read referenced file: " + source.file(), e);
+            }
+            var schema = document.schemas().get(source.name());
+            if (schema == null) {
+                throw new IllegalArgumentException("Schema '%s' is not found in %s".formatted(source.name(), source.file()));
+            }
+
+            importedNames.put(source.name(), source);
+            targetSchemas.put(source.name(), schema);
+            walk(schema, document);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class FragmentCache {
+    private final Path fragmentsDirectory;
+    private final Path manifestsDirectory;
+    // Без каталога (например, в режиме наблюдения) кэш живёт только в памяти процесса
+    private final Map<String, String> memoryFragments = new ConcurrentHashMap<>();
+    private final Map<Path, Manifest> memoryManifests = new ConcurrentHashMap<>();
+    // Сколько манифестов ссылается на фрагмент: фрагмент, на который больше никто не ссылается, удаляется,
+    // иначе каждая правка общей схемы оставляла бы в кэше прежние копии всех зависящих от неё фрагментов
+    private final Map<String, Integer> fragmentReferences = new HashMap<>();
+    private boolean fragmentReferencesLoaded;
+
+    public FragmentCache() {
+        this.fragmentsDirectory = null;
+        this.manifestsDirectory = null;
+    }
+
+    public FragmentCache(Path directory) {
+        this.fragmentsDirectory = directory.resolve("fragments");
+        this.manifestsDirectory = directory.resolve("manifests");
+    }
+
+    public String getFragment(String key) throws IOException {
+        if (fragmentsDirectory == null) {
+            return memoryFragments.get(key);
+        }
+        var file = getFragmentFile(key);
+        return Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : null;
+    }
+
+    public void putFragment(String key, String fragment) throws IOException {
+        if (fragmentsDirectory == null) {
+            memoryFragments.put(key, fragment);
+            return;
+        }
+        writeAtomically(getFragmentFile(key), fragment);
+    }
+
+    public Manifest readManifest(Path outputFile) throws IOException {
+        if (manifestsDirectory == null) {
+            return memoryManifests.get(outputFile.toAbsolutePath().normalize());
+        }
+        var file = getManifestFile(outputFile);
+        return Files.exists(file) ? readManifestFile(file) : null;
+    }
+
+    private static Manifest readManifestFile(Path file) throws IOException {
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        var inputs = new ArrayList<FileStamp>();
+        var inputCount = Integer.parseInt(properties.getProperty("inputs.count", "0"));
+        for (int i = 0; i < inputCount; i++) {
+            inputs.add(FileStamp.read(properties, "input." + i));
+        }
+        return new Manifest(properties.getProperty("salt"), properties.getProperty("inputs.hash"), inputs, FileStamp.read(properties, "output"),
+                readFragmentKeys(properties.getProperty("fragments", "")));
+    }
+
+    public void writeManifest(Path outputFile, Manifest manifest) throws IOException {
+        synchronized (fragmentReferences) {
+            loadFragmentReferences();
+            var previous = readManifest(outputFile);
+            storeManifest(outputFile, manifest);
+            for (var key : manifest.fragments()) {
+                fragmentReferences.merge(key, 1, Integer::sum);
+            }
+            if (previous != null) {
+                for (var key : previous.fragments()) {
+                    if (fragmentReferences.merge(key, -1, Integer::sum) <= 0) {
+                        fragmentReferences.remove(key);
+                        removeFragment(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private void storeManifest(Path outputFile, Manifest manifest) throws IOException {
+        if (manifestsDirectory == null) {
+            memoryManifests.put(outputFile.toAbsolutePath().normalize(), manifest);
+            return;
+        }
+        var properties = new Properties();
+        properties.setProperty("salt", manifest.salt());
+        properties.setProperty("inputs.hash", manifest.inputsHash());
+        properties.setProperty("inputs.count", String.valueOf(manifest.inputs().size()));
+        for (int i = 0; i < manifest.inputs().size(); i++) {
+            manifest.inputs().get(i).write(properties, "input." + i);
+        }
+        manifest.output().write(properties, "output");
+        properties.setProperty("fragments", String.join(",", manifest.fragments()));
+
+        var file = getManifestFile(outputFile);
+        Files.createDirectories(file.getParent());
+        try (var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+    }
+
+    private void removeFragment(String key) throws IOException {
+        if (fragmentsDirectory == null) {
+            memoryFragments.remove(key);
+            return;
+        }
+        // Параллельная генерация могла уже сослаться на фрагмент, не успев записать манифест: тогда в следующий раз
+        // он будет отрендерен заново, на результат это не влияет
+        Files.deleteIfExists(getFragmentFile(key));
+    }
+
+    // Ссылки из манифестов на диске читаются один раз, до первой записи манифеста этим процессом.
+    // Каталог фрагментов целиком не просматривается: другой процесс с тем же --cache-dir мог записать
+    // фрагменты, но ещё не манифест, поэтому удаляется только то, от чего отказался манифест
+    private void loadFragmentReferences() throws IOException {
+        if (fragmentReferencesLoaded || manifestsDirectory == null) {
+            return;
+        }
+        fragmentReferencesLoaded = true;
+        if (Files.isDirectory(manifestsDirectory)) {
+            try (var manifests = Files.list(manifestsDirectory)) {
+                for (var file : manifests.filter(f -> f.getFileName().toString().endsWith(".properties")).toList()) {
+                    for (var key : readManifestFile(file).fragments()) {
+                        fragmentReferences.merge(key, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<String> readFragmentKeys(String value) {
+        return value.isEmpty() ? List.of() : List.of(value.split(","));
+    }
+
+    private Path getFragmentFile(String key) {
+        return fragmentsDirectory.resolve(key.substring(0, 2)).resolve(key + ".md");
+    }
+
+    private Path getManifestFile(Path outputFile) {
+        return manifestsDirectory.resolve(ContentHash.of(outputFile.toAbsolutePath().normalize().toString()) + ".properties");
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        // Через временный файл, чтобы прерванная запись не оставила в кэше обрезанный фрагмент
+        Files.createDirectories(file.getParent());
+        var tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // fragments - ключи фрагментов, из которых собран документ
+    public record Manifest(String salt, String inputsHash, List<FileStamp> inputs, FileStamp output, List<String> fragments) {
+
+        public boolean isUpToDate(String expectedSalt) throws IOException {
+            if (!Objects.equals(salt, expectedSalt)) {
+                return false;
+            }
+            for (var input : inputs) {
+                if (!input.matches()) {
+                    return false;
+                }
+            }
+            return output.matches();
+        }
+    }
+
+    public record FileStamp(Path path, long size, long lastModified) {
+
+        public static FileStamp of(Path path) throws IOException {
+            return new FileStamp(path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+        }
+
+        public boolean matches() throws IOException {
+            return Files.exists(path)
+                    && Files.size(path) == size
+                    && Files.getLastModifiedTime(path).toMillis() == lastModified;
+        }
+
+        private static FileStamp read(Properties properties, String prefix) {
+            return new FileStamp(
+                    Path.of(properties.getProperty(prefix + ".path")),
+                    Long.parseLong(properties.getProperty(prefix + ".size")),
+                    Long.parseLong(properties.getProperty(prefix + ".lastModified"))
+            );
+        }
+
+        private void write(Properties properties, String prefix) {
+            properties.setProperty(prefix + ".path", path.toString());
+            properties.setProperty(prefix + ".size", String.valueOf(size));
+            properties.setProperty(prefix + ".lastModified", String.valueOf(lastModified));
+        }
+    }
+}
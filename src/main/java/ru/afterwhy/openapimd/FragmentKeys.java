@@ -0,0 +1,127 @@
+package ru.afterwhy.openapimd;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.oas.models.OpenAPI;
+import ru.afterwhy.openapimd.model.SpecOperation;
+import ru.afterwhy.openapimd.model.SpecTag;
+
+import java.io.UncheckedIOException;
+import java.util.*;
+
+class FragmentKeys {
+    private static final String COMPONENTS_PREFIX = "#/components";
+    private static final String SCHEMAS_PREFIX = COMPONENTS_PREFIX + "/schemas/";
+
+    private final ObjectMapper mapper = Json.mapper();
+    private final OpenAPI openAPI;
+    private final String salt;
+    private final JsonNode components;
+    private final Map<String, String> componentHashes = new HashMap<>();
+    private final Map<String, List<String>> componentReferences = new HashMap<>();
+    private Map<String, Integer> schemaRanks;
+
+    FragmentKeys(OpenAPI openAPI, String salt) {
+        this.openAPI = openAPI;
+        this.salt = salt;
+        this.components = openAPI.getComponents() != null ? mapper.valueToTree(openAPI.getComponents()) : null;
+    }
+
+    String header(List<SpecTag> tags) {
+        var info = openAPI.getInfo();
+        var hash = new ContentHash().add(salt).add("header").add(info.getTitle()).add(info.getDescription());
+        for (var tag : tags) {
+            hash.add(tag.name());
+            for (var operation : tag.operations()) {
+                var summary = SpecParser.getOperation(openAPI, operation.httpMethod(), operation.path()).getSummary();
+                hash.add(operation.httpMethod().name()).add(operation.path()).add(summary);
+            }
+        }
+        return hash.hex();
+    }
+
+    String tag(SpecTag tag, List<String> endpointKeys) {
+        var hash = new ContentHash().add(salt).add("tag").add(tag.name());
+        endpointKeys.forEach(hash::add);
+        return hash.hex();
+    }
+
+    String endpoint(SpecOperation operation) {
+        // Операция вместе со всеми компонентами, до которых она достаёт через $ref
+        JsonNode operationNode = mapper.valueToTree(SpecParser.getOperation(openAPI, operation.httpMethod(), operation.path()));
+        var hash = new ContentHash()
+                .add(salt)
+                .add("endpoint")
+                .add(operation.httpMethod().name())
+                .add(operation.path())
+                .add(toBytes(operationNode));
+        var reachable = getReachableComponents(operationNode);
+        for (var ref : reachable) {
+            hash.add(ref).add(getComponentHash(ref));
+        }
+        // Заглушки циклов зависят от того, в каком порядке разбираются схемы, а его может сдвинуть и
+        // правка недостижимой схемы. Важен только взаимный порядок достижимых, он и входит в ключ
+        hash.add("order");
+        reachable.stream()
+                .filter(ref -> ref.startsWith(SCHEMAS_PREFIX))
+                .map(ref -> ref.substring(SCHEMAS_PREFIX.length()))
+                .sorted(Comparator.comparing(name -> getSchemaRanks().getOrDefault(name, -1)))
+                .forEach(hash::add);
+        return hash.hex();
+    }
+
+    String schemas() {
+        var schemas = components != null ? components.get("schemas") : null;
+        return new ContentHash().add(salt).add("schemas").add(schemas != null ? toBytes(schemas) : new byte[0]).hex();
+    }
+
+    private SortedSet<String> getReachableComponents(JsonNode node) {
+        var reachable = new TreeSet<String>();
+        var queue = new ArrayDeque<>(getReferences(node));
+        while (!queue.isEmpty()) {
+            var ref = queue.poll();
+            if (reachable.add(ref)) {
+                queue.addAll(componentReferences.computeIfAbsent(ref, r -> getReferences(getComponentNode(r))));
+            }
+        }
+        return reachable;
+    }
+
+    private Map<String, Integer> getSchemaRanks() {
+        if (schemaRanks == null) {
+            var resolutionOrder = SchemasParser.getResolutionOrder(openAPI);
+            schemaRanks = new HashMap<>();
+            for (int i = 0; i < resolutionOrder.size(); i++) {
+                schemaRanks.put(resolutionOrder.get(i), i);
+            }
+        }
+        return schemaRanks;
+    }
+
+    private String getComponentHash(String ref) {
+        return componentHashes.computeIfAbsent(ref, r -> ContentHash.of(toBytes(getComponentNode(r))));
+    }
+
+    private JsonNode getComponentNode(String ref) {
+        return components != null ? components.at(ref.substring(COMPONENTS_PREFIX.length())) : null;
+    }
+
+    private static List<String> getReferences(JsonNode node) {
+        if (node == null || node.isMissingNode()) {
+            return List.of();
+        }
+        return node.findValuesAsText("$ref").stream()
+                .filter(ref -> ref.startsWith(COMPONENTS_PREFIX + "/"))
+                .toList();
+    }
+
+    private byte[] toBytes(JsonNode node) {
+        try {
+            return mapper.writeValueAsBytes(node);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.afterwhy.openapimd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+final class Futures {
+    private Futures() {
+    }
+
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Пробрасываем исходное исключение задачи, как при последовательном выполнении
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    static <T> List<T> joinAll(List<CompletableFuture<T>> futures) {
+        var results = new ArrayList<T>(futures.size());
+        for (var future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+}
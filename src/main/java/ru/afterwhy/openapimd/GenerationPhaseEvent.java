@@ -0,0 +1,19 @@
+package ru.afterwhy.openapimd;
+
+import jdk.jfr.*;
+
+@Name("ru.afterwhy.openapimd.GenerationPhase")
+@Label("Generation Phase")
+@Category({"OpenAPI to Markdown"})
+@StackTrace(false)
+class GenerationPhaseEvent extends Event {
+    @Label("Spec File")
+    String spec;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Allocated Bytes")
+    @DataAmount
+    long allocatedBytes;
+}
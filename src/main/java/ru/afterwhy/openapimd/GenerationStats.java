@@ -0,0 +1,158 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Метрики генерации одного документа; фазы дополнительно пишутся событиями JFR
+public class GenerationStats {
+    private static final com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+
+    public enum Phase {
+        READ,
+        CACHE,
+        SCHEMAS,
+        ENDPOINTS,
+        RENDER,
+        WRITE
+    }
+
+    private final Path specFile;
+    private final Path outputFile;
+    private final Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+    private final LongAdder schemasResolved = new LongAdder();
+    private final LongAdder memoHits = new LongAdder();
+    private final LongAdder memoMisses = new LongAdder();
+    private final LongAdder examplesGenerated = new LongAdder();
+    private final LongAdder fragmentHits = new LongAdder();
+    private final LongAdder fragmentMisses = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private long wallNanos;
+    private boolean updated;
+
+    public GenerationStats(Path specFile, Path outputFile) {
+        this.specFile = specFile;
+        this.outputFile = outputFile;
+    }
+
+    // Память считается по текущему потоку: выделения в потоках --parallel в фазу не попадают
+    <T> T measure(Phase phase, Measured<T> measured) throws IOException {
+        var event = new GenerationPhaseEvent();
+        event.begin();
+        var allocatedBefore = getAllocatedBytes();
+        var startedAt = System.nanoTime();
+        try {
+            return measured.get();
+        } finally {
+            var elapsed = System.nanoTime() - startedAt;
+            var allocated = allocatedBefore >= 0 ? getAllocatedBytes() - allocatedBefore : -1;
+            synchronized (phases) {
+                phases.computeIfAbsent(phase, _ -> new PhaseStats()).add(elapsed, allocated);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.spec = String.valueOf(specFile);
+                event.phase = phase.name();
+                event.allocatedBytes = allocated;
+                event.commit();
+            }
+        }
+    }
+
+    void schemaResolved() {
+        schemasResolved.increment();
+    }
+
+    void memoHit() {
+        memoHits.increment();
+    }
+
+    void memoMiss() {
+        memoMisses.increment();
+    }
+
+    void exampleGenerated() {
+        examplesGenerated.increment();
+    }
+
+    void fragmentHit() {
+        fragmentHits.increment();
+    }
+
+    void fragmentMiss() {
+        fragmentMisses.increment();
+    }
+
+    void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void finish(long wallNanos, boolean updated) {
+        this.wallNanos = wallNanos;
+        this.updated = updated;
+    }
+
+    public boolean updated() {
+        return updated;
+    }
+
+    public Map<String, Object> toMap() {
+        var phaseMaps = new LinkedHashMap<String, Object>();
+        synchronized (phases) {
+            phases.forEach((phase, stats) -> phaseMaps.put(phase.name().toLowerCase(), Map.of(
+                    "wallMillis", stats.wallNanos / 1_000_000.0,
+                    "allocatedBytes", stats.allocatedBytes,
+                    "calls", stats.calls
+            )));
+        }
+
+        var map = new LinkedHashMap<String, Object>();
+        map.put("spec", String.valueOf(specFile));
+        map.put("output", String.valueOf(outputFile));
+        map.put("updated", updated);
+        map.put("wallMillis", wallNanos / 1_000_000.0);
+        map.put("phases", phaseMaps);
+        map.put("schemasResolved", schemasResolved.sum());
+        map.put("memoHits", memoHits.sum());
+        map.put("memoMisses", memoMisses.sum());
+        map.put("examplesGenerated", examplesGenerated.sum());
+        map.put("fragmentHits", fragmentHits.sum());
+        map.put("fragmentMisses", fragmentMisses.sum());
+        map.put("bytesWritten", bytesWritten.sum());
+        return map;
+    }
+
+    private static long getAllocatedBytes() {
+        return threadMXBean != null ? threadMXBean.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()
+                && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    interface Measured<T> {
+        T get() throws IOException;
+    }
+
+    private static class PhaseStats {
+        long wallNanos;
+        long allocatedBytes;
+        long calls;
+
+        void add(long wallNanos, long allocatedBytes) {
+            this.wallNanos += wallNanos;
+            this.allocatedBytes = allocatedBytes >= 0 && this.allocatedBytes >= 0 ? this.allocatedBytes + allocatedBytes : -1;
+            this.calls++;
+        }
+    }
+}
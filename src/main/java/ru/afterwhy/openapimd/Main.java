@@ -3,31 +3,264 @@ package ru.afterwhy.openapimd;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
-import java.io.FileWriter;
-import java.util.Locale;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
+    private static final String USAGE = """
+            Usage: java OpenApiToMarkdown [options] <path-to-openapi-file>
+                   java OpenApiToMarkdown [options] --output-dir=<dir> <file|directory|glob>...
+                   java OpenApiToMarkdown [options] --server[=<port>]
+            Options:
+                   --parallel[=<threads>]  parse and render on a fork-join pool
+                   --deterministic         derive example values from schema paths so unchanged specs give identical output
+                   --streaming             read specs with a streaming parser instead of swagger-parser (local $ref only)
+                   --locales=<tag>,...     render every locale from a single parse into <name>.<locale>.md (default ru-RU)
+                   --ref-cache[=<docs>]    parse files shared via external schema $refs once per run (keeps up to <docs> documents)
+                   --template=<file>       properties file overriding messages and layout.* strings
+                   --cache-dir=<dir>       regenerate incrementally using a fragment cache
+                   --split                 write a directory per spec: index.md, tags/*.md and schemas/*.md
+                   --memory-budget=<size>  build and render endpoints tag by tag in batches that shrink as the heap nears <size> (e.g. 256m);
+                                           the parsed spec and component schemas stay in memory in full
+                   --stats[=<file>]        print per-phase timings, allocations and counters as JSON (to stdout or a file)
+                   --watch                 keep running and rebuild when the specs or their $ref files change
+                   --server[=<port>]       serve POST /render (spec in body) and GET /render?path=<file>
+                   --bind=<address>        address the server listens on (default loopback only)""";
 
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java OpenApiToMarkdown <path-to-openapi-file>");
+        var options = Options.parse(args);
+        if (options == null) {
+            System.out.println(USAGE);
             return;
         }
 
-        var openApiFilePath = args[0];
-        var locale = Locale.of("ru-RU");
+        var locale = options.locales().getFirst();
 
         var objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
 
-        try (var writer = new FileWriter("api-documentation-new.md")) {
-            var spec = new SpecParser().parse(openApiFilePath, locale);
-            var mdRenderer = new MdRenderer(objectMapper, locale);
-            mdRenderer.render(spec, writer);
+        try {
+            if (options.serverPort() != null) {
+                // Пул сервера нужен, пока жив процесс, поэтому не закрывается
+                var executor = getExecutor(options, createPool(options));
+                var specParser = createSpecParser(options, executor);
+                // GET /render?path= читает файлы с диска: наружу сервер открывается только явным --bind
+                var address = options.bindAddress() != null ? InetAddress.getByName(options.bindAddress()) : InetAddress.getLoopbackAddress();
+                var server = new RenderServer(specParser, objectMapper, locale, options.template(), executor).start(address, options.serverPort());
+                System.out.println("Listening on port " + server.getAddress().getPort());
+                return;
+            }
+
+            try (var pool = createPool(options)) {
+                generateDocuments(options, objectMapper, locale, getExecutor(options, pool));
+            }
         } catch (Exception e) {
             System.out.println("Error building markdown file: " + e.getMessage());
+            for (var suppressed : e.getSuppressed()) {
+                System.out.println("  " + suppressed.getMessage());
+            }
             throw new RuntimeException(e);
         }
 
     }
+
+    private static void generateDocuments(Options options, ObjectMapper objectMapper, Locale locale, Executor executor) throws Exception {
+        var specParser = createSpecParser(options, executor);
+        if (options.locales().size() > 1) {
+            // Модель не зависит от локали: разбор один на все языки
+            var renderers = new LinkedHashMap<Locale, MdRenderer>();
+            for (var documentLocale : options.locales()) {
+                renderers.put(documentLocale, new MdRenderer(objectMapper, RenderPlan.compile(documentLocale, options.template()), executor));
+            }
+            var multiLocaleGenerator = new MultiLocaleGenerator(specParser, renderers);
+            generate(options, objectMapper, new BatchGenerator(multiLocaleGenerator::generateWithStats), multiLocaleGenerator::generateWithStats);
+            return;
+        }
+
+        var mdRenderer = new MdRenderer(objectMapper, RenderPlan.compile(locale, options.template()), executor);
+        var fragmentCache = options.cacheDirectory() != null
+                ? new FragmentCache(options.cacheDirectory())
+                : options.watch() ? new FragmentCache() : null;
+        var documentGenerator = new DocumentGenerator(specParser, mdRenderer, locale, fragmentCache, options.watch(),
+                options.memoryBudget(), options.split());
+        if (options.watch()) {
+            var outputFiles = options.outputDirectory() != null
+                    ? BatchGenerator.getOutputFiles(BatchGenerator.findSpecFiles(options.inputs()), options.outputDirectory())
+                    : Map.of(Path.of(options.inputs().getFirst()), Path.of("api-documentation-new.md"));
+            if (options.outputDirectory() != null) {
+                Files.createDirectories(options.outputDirectory());
+            }
+            new SpecWatcher(documentGenerator, outputFiles).run();
+        } else {
+            generate(options, objectMapper, new BatchGenerator(documentGenerator), documentGenerator::generateWithStats);
+        }
+    }
+
+    private static SpecParser createSpecParser(Options options, Executor executor) {
+        var externalRefCache = options.refCacheSize() != null ? new ExternalRefCache(options.refCacheSize()) : null;
+        return new SpecParser(executor, options.streaming() ? new StreamingSpecReader() : null, options.deterministic(), externalRefCache);
+    }
+
+    // Собственный пул только у --parallel=<threads>, его закрывает вызывающий
+    private static ForkJoinPool createPool(Options options) {
+        return options.parallelism() != null && options.parallelism() > 0 ? new ForkJoinPool(options.parallelism()) : null;
+    }
+
+    private static Executor getExecutor(Options options, ForkJoinPool pool) {
+        return pool != null ? pool : options.parallelism() != null ? ForkJoinPool.commonPool() : null;
+    }
+
+    private static void generate(Options options, ObjectMapper objectMapper, BatchGenerator batchGenerator,
+                                 BatchGenerator.SpecGenerator specGenerator) throws IOException {
+        List<GenerationStats> stats;
+        if (options.outputDirectory() != null) {
+            var specFiles = BatchGenerator.findSpecFiles(options.inputs());
+            stats = batchGenerator.generateWithStats(specFiles, options.outputDirectory());
+        } else {
+            stats = List.of(specGenerator.generate(Path.of(options.inputs().getFirst()), Path.of("api-documentation-new.md")));
+        }
+        if (options.stats() != null) {
+            writeStats(objectMapper, stats, options.stats());
+        }
+    }
+
+    private static void writeStats(ObjectMapper objectMapper, List<GenerationStats> stats, String target) throws IOException {
+        var json = objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(stats.stream().map(GenerationStats::toMap).toList());
+        if (target.isEmpty()) {
+            System.out.println(json);
+        } else {
+            Files.writeString(Path.of(target), json);
+        }
+    }
+
+    // stats - пустая строка для вывода в stdout, иначе путь к файлу;
+    // parallelism - null без --parallel, 0 для общего пула, иначе число потоков собственного пула
+    private record Options(List<String> inputs, Path outputDirectory, Path cacheDirectory, Path template, Integer parallelism,
+                           boolean streaming, boolean deterministic, boolean watch, Integer serverPort, String stats, Long memoryBudget, boolean split,
+                           List<Locale> locales, Integer refCacheSize, String bindAddress) {
+
+        static Options parse(String[] args) {
+            // Неразобранное число в --parallel, --server, --ref-cache или --memory-budget - такая же ошибка в аргументах
+            try {
+                return parseArguments(args);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static Options parseArguments(String[] args) {
+            var inputs = new ArrayList<String>();
+            Path outputDirectory = null;
+            Path cacheDirectory = null;
+            Path template = null;
+            Integer parallelism = null;
+            var streaming = false;
+            var deterministic = false;
+            var watch = false;
+            Integer serverPort = null;
+            String stats = null;
+            Long memoryBudget = null;
+            var split = false;
+            var locales = List.of(Locale.forLanguageTag("ru-RU"));
+            Integer refCacheSize = null;
+            String bindAddress = null;
+            for (var arg : args) {
+                if (arg.equals("--server")) {
+                    serverPort = RenderServer.DEFAULT_PORT;
+                } else if (arg.startsWith("--server=")) {
+                    serverPort = Integer.parseInt(arg.substring("--server=".length()));
+                    if (serverPort < 0 || serverPort > 65535) {
+                        return null;
+                    }
+                } else if (arg.startsWith("--bind=")) {
+                    bindAddress = arg.substring("--bind=".length());
+                } else if (arg.equals("--parallel")) {
+                    parallelism = 0;
+                } else if (arg.startsWith("--parallel=")) {
+                    parallelism = Integer.parseInt(arg.substring("--parallel=".length()));
+                    if (parallelism <= 0) {
+                        return null;
+                    }
+                } else if (arg.startsWith("--output-dir=")) {
+                    outputDirectory = Path.of(arg.substring("--output-dir=".length()));
+                } else if (arg.equals("--deterministic")) {
+                    deterministic = true;
+                } else if (arg.equals("--streaming")) {
+                    streaming = true;
+                } else if (arg.equals("--stats")) {
+                    stats = "";
+                } else if (arg.startsWith("--stats=")) {
+                    stats = arg.substring("--stats=".length());
+                } else if (arg.equals("--split")) {
+                    split = true;
+                } else if (arg.equals("--watch")) {
+                    watch = true;
+                } else if (arg.startsWith("--locales=")) {
+                    locales = Arrays.stream(arg.substring("--locales=".length()).split(","))
+                            .map(String::trim)
+                            .filter(tag -> !tag.isEmpty())
+                            .distinct()
+                            .map(Locale::forLanguageTag)
+                            .toList();
+                    if (locales.isEmpty()) {
+                        return null;
+                    }
+                } else if (arg.equals("--ref-cache")) {
+                    refCacheSize = ExternalRefCache.DEFAULT_MAX_DOCUMENTS;
+                } else if (arg.startsWith("--ref-cache=")) {
+                    refCacheSize = Integer.parseInt(arg.substring("--ref-cache=".length()));
+                    if (refCacheSize <= 0) {
+                        return null;
+                    }
+                } else if (arg.startsWith("--template=")) {
+                    template = Path.of(arg.substring("--template=".length()));
+                } else if (arg.startsWith("--memory-budget=")) {
+                    memoryBudget = MemoryBudget.parseSize(arg.substring("--memory-budget=".length()));
+                    if (memoryBudget <= 0) {
+                        return null;
+                    }
+                } else if (arg.startsWith("--cache-dir=")) {
+                    cacheDirectory = Path.of(arg.substring("--cache-dir=".length()));
+                } else if (!arg.startsWith("--")) {
+                    inputs.add(arg);
+                } else {
+                    return null;
+                }
+            }
+
+            // Потоковый читатель внешних ссылок не поддерживает
+            if (streaming && refCacheSize != null) {
+                return null;
+            }
+
+            // Сервер получает спецификации в запросах
+            if (serverPort != null) {
+                return inputs.isEmpty() && !watch ? new Options(inputs, null, null, template, parallelism, streaming, deterministic, false, serverPort, null, null, false, locales, refCacheSize, bindAddress) : null;
+            }
+            // Адрес задаётся только серверу
+            if (bindAddress != null) {
+                return null;
+            }
+
+            // Без каталога результатов поддерживается только один файл спецификации
+            if (inputs.isEmpty() || (outputDirectory == null && inputs.size() != 1) || (watch && stats != null)) {
+                return null;
+            }
+            // Кэш фрагментов сам решает, что строить, и пакетами не управляется; раздельный вывод - отдельный режим
+            if ((memoryBudget != null || split) && (cacheDirectory != null || watch) || memoryBudget != null && split) {
+                return null;
+            }
+            // Несколько локалей пишутся только целыми документами
+            if (locales.size() > 1 && (cacheDirectory != null || watch || memoryBudget != null || split)) {
+                return null;
+            }
+            return new Options(inputs, outputDirectory, cacheDirectory, template, parallelism, streaming, deterministic, watch, null, stats, memoryBudget, split, locales, refCacheSize, null);
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package ru.afterwhy.openapimd;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+public class MarkdownWriter implements Flushable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer out;
+
+    public MarkdownWriter(Writer out) {
+        // Небуферизованный приёмник оборачиваем, чтобы мелкие записи не уходили в поток по одной
+        this.out = out instanceof BufferedWriter || out instanceof StringWriter ? out : new BufferedWriter(out, BUFFER_SIZE);
+    }
+
+    public MarkdownWriter text(String text) throws IOException {
+        write(text);
+        return this;
+    }
+
+    public MarkdownWriter newLine() throws IOException {
+        out.write('\n');
+        return this;
+    }
+
+    public MarkdownWriter paragraph(String text) throws IOException {
+        write(text);
+        out.write("\n\n");
+        return this;
+    }
+
+    public MarkdownWriter heading(int level, String text) throws IOException {
+        for (int i = 0; i < level; i++) {
+            out.write('#');
+        }
+        out.write(' ');
+        write(text);
+        out.write('\n');
+        return this;
+    }
+
+    public MarkdownWriter code(String text) throws IOException {
+        out.write('`');
+        write(text);
+        out.write('`');
+        return this;
+    }
+
+    public MarkdownWriter link(String title, String anchorSource) throws IOException {
+        out.write('[');
+        write(title);
+        out.write("](#");
+        anchor(anchorSource);
+        out.write(')');
+        return this;
+    }
+
+    // Ссылка на заголовок в другом файле того же каталога документации
+    public MarkdownWriter link(String title, String file, String anchorSource) throws IOException {
+        out.write('[');
+        write(title);
+        out.write("](");
+        write(file);
+        out.write('#');
+        anchor(anchorSource);
+        out.write(')');
+        return this;
+    }
+
+    public MarkdownWriter anchor(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            if (c >= 0x80) {
+                // Для не-ASCII сохраняем правила String.toLowerCase
+                out.write(text.replace(" ", "-").replace("/", "-").toLowerCase());
+                return this;
+            }
+        }
+        for (int i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            out.write(c == ' ' || c == '/' ? '-' : Character.toLowerCase(c));
+        }
+        return this;
+    }
+
+    public MarkdownWriter tableRow(String first, String second, String third, String fourth) throws IOException {
+        out.write("| ");
+        write(first);
+        out.write(" | ");
+        write(second);
+        out.write(" | ");
+        write(third);
+        out.write(" | ");
+        write(fourth);
+        out.write(" |\n");
+        return this;
+    }
+
+    private void write(String text) throws IOException {
+        // Как и при конкатенации строк, null выводится текстом
+        out.write(text != null ? text : "null");
+    }
+
+    public Writer writer() {
+        return out;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
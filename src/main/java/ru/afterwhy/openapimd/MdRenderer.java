@@ -1,191 +1,333 @@
 package ru.afterwhy.openapimd;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import ru.afterwhy.openapimd.model.EndpointParameter;
-import ru.afterwhy.openapimd.model.SpecSchema;
-import ru.afterwhy.openapimd.model.SpecSchemaProperty;
-import ru.afterwhy.openapimd.model.Specification;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ru.afterwhy.openapimd.model.*;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 public class MdRenderer {
 
-    private final ResourceBundle resourceBundle;
-    private final ObjectMapper objectMapper;
+    private final RenderPlan plan;
+    private final ObjectWriter exampleWriter;
+    private final Executor executor;
+    // Ключи сравниваются по ссылке и не удерживают модель, отрендеренную ранее
+    private final Map<SpecExample, String> formattedExamples = Collections.synchronizedMap(new WeakHashMap<>());
 
     public MdRenderer(ObjectMapper objectMapper, Locale locale) {
-        this.objectMapper = objectMapper;
-        this.resourceBundle = ResourceBundle.getBundle("locale", locale);
+        this(objectMapper, locale, null);
+    }
+
+    public MdRenderer(ObjectMapper objectMapper, Locale locale, Executor executor) {
+        this(objectMapper, RenderPlan.compile(locale), executor);
+    }
+
+    public MdRenderer(ObjectMapper objectMapper, RenderPlan plan, Executor executor) {
+        // Вывод не закрывается и не сбрасывается после каждого примера; тексты локали подставляются при сериализации
+        var localizedMapper = objectMapper.copy()
+                .registerModule(new SimpleModule().addSerializer(ExamplePlaceholder.class, new ExamplePlaceholderSerializer(plan)));
+        this.exampleWriter = localizedMapper.writerWithDefaultPrettyPrinter()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.plan = plan;
+        this.executor = executor;
     }
 
     public String render(Specification spec) {
-        try (var os = new ByteArrayOutputStream(); var writer = new OutputStreamWriter(os)) {
+        var writer = new StringWriter();
+        try {
             render(spec, writer);
-            return os.toString(StandardCharsets.UTF_8);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
+        return writer.toString();
+    }
+
+    public void render(Specification spec, Path file) throws IOException {
+        try (var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            render(spec, writer);
+        }
+    }
+
+    public void render(Specification spec, Writer writer) throws IOException {
+        var md = new MarkdownWriter(writer);
+
+        renderHeader(md, spec);
+
+        // Описание тэгов и эндпойнтов
+        if (executor == null) {
+            for (var tag : spec.tags()) {
+                renderTagHeading(md, tag);
+                for (var operation : tag.operations()) {
+                    renderEndpoint(md, spec.getEndpoint(operation.httpMethod(), operation.path()));
+                }
+            }
+        } else {
+            renderEndpointsInParallel(md, spec);
+        }
+
+        md.flush();
+    }
+
+    String getPlanFingerprint() {
+        return plan.fingerprint();
+    }
+
+    public String renderHeader(Specification spec) {
+        return renderToString(md -> renderHeader(md, spec));
+    }
+
+    // Оглавление без модели эндпойнтов: хватает заголовков операций
+    String renderHeader(String title, String description, List<SpecTag> tags, Function<SpecOperation, String> summaries) {
+        return renderToString(md -> renderHeader(md, title, description, tags, summaries));
+    }
+
+    // Оглавление раздельного вывода: ссылки ведут на заголовки в файлах тэгов и схем
+    public String renderIndex(Specification spec, Function<SpecTag, String> tagFiles, Function<SpecSchema, String> schemaFiles) {
+        return renderToString(md -> {
+            md.heading(1, spec.title()).newLine();
+            if (spec.description() != null) {
+                md.paragraph(spec.description());
+            }
+
+            md.heading(2, plan.apiHeading).newLine();
+            for (var tag : spec.tags()) {
+                var tagFile = tagFiles.apply(tag);
+                md.text("- ").link(tag.name(), tagFile, tag.name()).newLine();
+                for (var operation : tag.operations()) {
+                    var summary = spec.getEndpoint(operation.httpMethod(), operation.path()).getSummaryEvenIfNotExists();
+                    md.text("  - ").link(summary, tagFile, summary).newLine();
+                }
+            }
+            md.newLine();
+
+            if (!spec.schemas().isEmpty()) {
+                md.heading(2, plan.schemasHeading).newLine();
+                for (var schema : spec.schemas()) {
+                    md.text("- ").link(schema.name(), schemaFiles.apply(schema), schema.name()).newLine();
+                }
+                md.newLine();
+            }
+        });
+    }
+
+    // Тэг со всеми эндпойнтами - то же, что его раздел в едином документе
+    public String renderTag(Specification spec, SpecTag tag) {
+        return renderToString(md -> {
+            renderTagHeading(md, tag);
+            for (var operation : tag.operations()) {
+                renderEndpoint(md, spec.getEndpoint(operation.httpMethod(), operation.path()));
+            }
+        });
+    }
+
+    public String renderSchema(SpecSchema schema) {
+        return renderToString(md -> {
+            md.heading(3, schema.name()).newLine();
+            if (schema.description() != null) {
+                md.paragraph(schema.description());
+            }
+            if (!schema.properties().isEmpty()) {
+                writeMarkdownTableForProperties(md, schema.properties());
+                md.newLine();
+            }
+            md.heading(5, plan.schemaExampleHeading);
+            writeExample(md, "application/json", schema);
+        });
+    }
+
+    public String renderTagHeading(SpecTag tag) {
+        return renderToString(md -> renderTagHeading(md, tag));
+    }
+
+    public String renderEndpoint(SpecApiEndpoint endpoint) {
+        return renderToString(md -> renderEndpoint(md, endpoint));
+    }
+
+    private void renderHeader(MarkdownWriter md, Specification spec) throws IOException {
+        renderHeader(md, spec.title(), spec.description(), spec.tags(),
+                operation -> spec.getEndpoint(operation.httpMethod(), operation.path()).getSummaryEvenIfNotExists());
     }
 
-    public void render(Specification spec, OutputStreamWriter writer) throws IOException {
+    private void renderHeader(MarkdownWriter md, String title, String description, List<SpecTag> tags,
+                              Function<SpecOperation, String> summaries) throws IOException {
         // Заголовок первого уровня (title из info)
-        writer.write("# " + spec.title() + "\n\n");
+        md.heading(1, title).newLine();
 
         // Описание API (description из info)
-        if (spec.description() != null) {
-            writer.write(spec.description() + "\n\n");
+        if (description != null) {
+            md.paragraph(description);
         }
 
         // Заголовок второго уровня - API
-        writer.write("## API\n\n");
+        md.heading(2, plan.apiHeading).newLine();
 
         // Группировка эндпойнтов по тэгам
-        for (var tag : spec.tags()) {
-            writer.write("- [" + tag.name() + "](#" + stringToLink(tag.name()) + ")\n");
+        for (var tag : tags) {
+            md.text("- ").link(tag.name(), tag.name()).newLine();
             for (var operation : tag.operations()) {
-                var summary = spec.getEndpoint(operation.httpMethod(), operation.path()).getSummaryEvenIfNotExists();
-                writer.write("  - [" + summary + "](#" + stringToLink(summary) + ")\n");
+                var summary = summaries.apply(operation);
+                md.text("  - ").link(summary, summary).newLine();
             }
         }
 
-        writer.write("\n");
+        md.newLine();
+    }
 
-        // Описание тэгов и эндпойнтов
-        for (var tag : spec.tags()) {
-            writer.write("### " + tag.name() + "\n\n");
+    // Освобождает JSON примеров именованных схем, когда памяти не хватает
+    void clearFormattedExamples() {
+        formattedExamples.clear();
+    }
 
+    private void renderTagHeading(MarkdownWriter md, SpecTag tag) throws IOException {
+        md.heading(3, tag.name()).newLine();
+    }
+
+    private void renderEndpointsInParallel(MarkdownWriter md, Specification spec) throws IOException {
+        // Каждый эндпойнт рендерится в свой буфер, буферы выводятся в исходном порядке тэгов. В работе не больше
+        // окна эндпойнтов: готовые пишутся, пока рендерятся следующие, и все буферы документа разом в памяти не лежат
+        var window = 2 * (executor instanceof ForkJoinPool pool ? pool.getParallelism() : Runtime.getRuntime().availableProcessors());
+        var pending = new ArrayDeque<CompletableFuture<String>>(window + 1);
+        for (var tag : spec.tags()) {
+            pending.add(CompletableFuture.completedFuture(renderTagHeading(tag)));
             for (var operation : tag.operations()) {
-                var path = operation.path();
                 var endpoint = spec.getEndpoint(operation.httpMethod(), operation.path());
-                var summary = endpoint.getSummaryEvenIfNotExists();
+                pending.add(CompletableFuture.supplyAsync(() -> renderEndpoint(endpoint), executor));
+                while (pending.size() > window) {
+                    md.text(Futures.join(pending.poll()));
+                }
+            }
+        }
+        while (!pending.isEmpty()) {
+            md.text(Futures.join(pending.poll()));
+        }
+    }
 
-                // Заголовок 4 уровня с использованием summary
-                writer.write("#### " + summary + "\n\n");
+    private static String renderToString(MarkdownFragment fragment) {
+        var buffer = new StringWriter();
+        try {
+            fragment.render(new MarkdownWriter(buffer));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
+    }
 
-                // Метод, путь и operationId
-                writer.write("`" + endpoint.method().name().toUpperCase() + " " + path + "`\n\n");
-                writer.write("**Operation ID:** `" + endpoint.operationId() + "`\n\n");
+    private void renderEndpoint(MarkdownWriter md, SpecApiEndpoint endpoint) throws IOException {
+        var summary = endpoint.getSummaryEvenIfNotExists();
 
-                // Описание (description)
-                if (endpoint.description() != null) {
-                    writer.write(endpoint.description() + "\n\n");
-                }
+        // Заголовок 4 уровня с использованием summary
+        md.heading(4, summary).newLine();
 
-                // Параметры запроса
-                if (endpoint.parameters() != null && !endpoint.parameters().isEmpty()) {
-                    writer.write("##### %s\n\n".formatted(resourceBundle.getString("endpoint.request.schema-properties.header")));
-                    var typeHeader = resourceBundle.getString("schema-parameters.table-header.type");
-                    var nameHeader = resourceBundle.getString("schema-parameters.table-header.name");
-                    var descriptionHeader = resourceBundle.getString("schema-parameters.table-header.description");
-                    var requiredHeader = resourceBundle.getString("schema-parameters.table-header.required");
-                    writer.write("| %s | %s | %s | %s |\n".formatted(typeHeader, nameHeader, descriptionHeader, requiredHeader));
-                    writer.write("|----|----|----|----|\n");
-                    for (var parameter : endpoint.parameters()) {
-                        var type = getEndpointParameterTypeLocalized(parameter);
-                        var name = parameter.name();
-                        var description = parameter.description() != null ? parameter.description() : "";
-                        var required = parameter.required() ? "+" : "-";
-                        writer.write("| " + type + " | " + name + " | " + description + " | " + required + " |\n");
-                    }
-                    writer.write("\n");
-                }
+        // Метод, путь и operationId
+        md.text("`").text(endpoint.method().name()).text(" ").text(endpoint.path()).text("`\n\n");
+        md.text(plan.operationIdLabel).code(endpoint.operationId()).text("\n\n");
 
-                if (endpoint.request() != null) {
-                    writer.write("### %s\n".formatted(resourceBundle.getString("endpoint.request")));
-                    for (var requestVariant : endpoint.request().content().entrySet()) {
-                        var mimeType = requestVariant.getKey();
-                        writer.write("##### %s\n".formatted(mimeType));
-                        writer.write(generateMarkdownTableForProperties(requestVariant.getValue().properties()));
-                        writer.write("##### %s\n".formatted(resourceBundle.getString("endpoint.request.example")));
-                        writer.write(generateExample(mimeType, requestVariant));
-                    }
-                }
+        // Описание (description)
+        if (endpoint.description() != null) {
+            md.paragraph(endpoint.description());
+        }
+
+        // Параметры запроса
+        if (endpoint.parameters() != null && !endpoint.parameters().isEmpty()) {
+            md.heading(5, plan.parametersHeading).newLine();
+            md.text(plan.parametersTableHeader);
+            for (var parameter : endpoint.parameters()) {
+                var type = plan.getParameterType(parameter.type());
+                var description = parameter.description() != null ? parameter.description() : "";
+                var required = parameter.required() ? plan.required : plan.optional;
+                md.tableRow(type, parameter.name(), description, required);
+            }
+            md.newLine();
+        }
 
-                if (!endpoint.responses().responses().isEmpty()) {
-                    writer.write("### %s\n".formatted(resourceBundle.getString("endpoint.response")));
-                    for (var responsesByHttpCode : endpoint.responses().responses().entrySet()) {
-                        writer.write("#### %s\n".formatted(responsesByHttpCode.getKey()));
-                        for (var responseVariant : responsesByHttpCode.getValue().content().entrySet()) {
-                            var mimeType = responseVariant.getKey();
-                            writer.write("##### %s\n".formatted(mimeType));
-                            writer.write(generateMarkdownTableForProperties(responseVariant.getValue().properties()));
-                            writer.write("##### %s\n".formatted(resourceBundle.getString("endpoint.response.example")));
-                            writer.write(generateExample(mimeType, responseVariant));
-                        }
-                    }
+        if (endpoint.request() != null) {
+            md.heading(3, plan.requestHeading);
+            var request = endpoint.request();
+            for (int i = 0; i < request.size(); i++) {
+                var mimeType = request.getMimeType(i);
+                md.heading(5, mimeType);
+                writeMarkdownTableForProperties(md, request.getSchema(i).properties());
+                md.heading(5, plan.requestExampleHeading);
+                writeExample(md, mimeType, request.getSchema(i));
+            }
+        }
+
+        var responses = endpoint.responses();
+        if (!responses.isEmpty()) {
+            md.heading(3, plan.responseHeading);
+            for (int i = 0; i < responses.size(); i++) {
+                md.heading(4, String.valueOf(responses.getCode(i)));
+                var response = responses.getContent(i);
+                for (int j = 0; j < response.size(); j++) {
+                    var mimeType = response.getMimeType(j);
+                    md.heading(5, mimeType);
+                    writeMarkdownTableForProperties(md, response.getSchema(j).properties());
+                    md.heading(5, plan.responseExampleHeading);
+                    writeExample(md, mimeType, response.getSchema(j));
                 }
             }
         }
     }
 
-    private String generateExample(String mimeType, Map.Entry<String, SpecSchema> responseVariant) {
+    private void writeExample(MarkdownWriter md, String mimeType, SpecSchema schema) throws IOException {
         var codeType = switch (mimeType) {
             case "application/json" -> "json";
             default -> throw new UnsupportedOperationException("Unsupported mime type: " + mimeType);
         };
 
-        return """
-                ```%s
-                %s
-                ```
-                """.formatted(codeType, getFormattedExample(mimeType, responseVariant.getValue().example()));
+        md.text("```").text(codeType).newLine();
+        writeFormattedExample(md, schema);
+        md.newLine();
+        md.text("```").newLine();
     }
 
-    private String getFormattedExample(String mimeType, Object example) {
-        if (Objects.equals(mimeType, "application/json")) {
-            try {
-                return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(example);
-            } catch (JsonProcessingException e) {
-                throw new UncheckedIOException(e);
-            }
+    private void writeFormattedExample(MarkdownWriter md, SpecSchema schema) throws IOException {
+        var example = schema.example();
+        if (schema.name() == null) {
+            // Встроенная схема встречается один раз: сериализуем прямо в вывод
+            exampleWriter.writeValue(md.writer(), example.get());
+            return;
         }
 
-        throw new UnsupportedOperationException("Unsupported mime type: " + mimeType);
-    }
-
-    private String getEndpointParameterTypeLocalized(EndpointParameter parameter) {
-        var type = parameter.type();
-        var suffix = type != null ? type.name().toLowerCase() : "unspecified";
-        return resourceBundle.getString("endpoint-parameter-type." + suffix);
-    }
-
-    private static String stringToLink(String str) {
-        return str.replace(" ", "-").replace("/", "-").toLowerCase();
+        // Пример именованной схемы повторяется во многих эндпойнтах: сериализуем его один раз
+        var json = formattedExamples.get(example);
+        if (json == null) {
+            json = exampleWriter.writeValueAsString(example.get());
+            formattedExamples.put(example, json);
+        }
+        md.text(json);
     }
 
-    private String generateMarkdownTableForProperties(List<SpecSchemaProperty> properties) {
-        var tableBuilder = new StringBuilder();
-        var typeHeader = resourceBundle.getString("schema-properties.table-header.type");
-        var nameHeader = resourceBundle.getString("schema-properties.table-header.name");
-        var descriptionHeader = resourceBundle.getString("schema-properties.table-header.description");
-        var requiredHeader = resourceBundle.getString("schema-properties.table-header.required");
-        tableBuilder.append("| ").append(typeHeader).append(" | ").append(nameHeader).append(" | ").append(descriptionHeader).append(" | ").append(requiredHeader).append(" |\n");
-        tableBuilder.append("|-----|----------|----------|--------------|\n");
+    private void writeMarkdownTableForProperties(MarkdownWriter md, List<SpecSchemaProperty> properties) throws IOException {
+        md.text(plan.propertiesTableHeader);
 
         for (var parameter : properties) {
-            var propertyName = parameter.name();
             var propertySchema = parameter.schema();
 
             var type = getPropertyTypeName(parameter.type(), parameter.schema().itemSpec());
-            var description = propertySchema.description() != null ? propertySchema.description() : "—";
-            var required = parameter.required() ? "+" : "-";
+            var description = propertySchema.description() != null ? propertySchema.description() : plan.emptyDescription;
+            var required = parameter.required() ? plan.required : plan.optional;
 
             // Добавляем строку в таблицу
-            tableBuilder.append("| ")
-                    .append(type)
-                    .append(" | ").append(propertyName)
-                    .append(" | ").append(description)
-                    .append(" | ").append(required)
-                    .append(" |\n");
+            md.tableRow(type, parameter.name(), description, required);
         }
-
-        return tableBuilder.toString();
     }
 
     private String getPropertyTypeName(String type, SpecSchema itemSchema) {
@@ -193,12 +335,27 @@ public class MdRenderer {
             type = "object";
         }
 
-        var name = resourceBundle.getString("schema-property-type." + type.toLowerCase());
+        return plan.getPropertyTypeName(type, type.equals("array") ? itemSchema.name() : null);
+    }
+
+    private static class ExamplePlaceholderSerializer extends StdSerializer<ExamplePlaceholder> {
+        private final RenderPlan plan;
 
-        if (type.equals("array")) {
-            name = name.formatted(itemSchema.name());
+        ExamplePlaceholderSerializer(RenderPlan plan) {
+            super(ExamplePlaceholder.class);
+            this.plan = plan;
         }
 
-        return name;
+        @Override
+        public void serialize(ExamplePlaceholder placeholder, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            switch (placeholder) {
+                case DEFAULT_STRING -> generator.writeString(plan.defaultStringExample);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface MarkdownFragment {
+        void render(MarkdownWriter md) throws IOException;
     }
 }
@@ -0,0 +1,73 @@
+package ru.afterwhy.openapimd;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+// Размер пакета эндпойнтов, разбираемых и рендерящихся за раз, подстраивается под живые данные в куче:
+// при приближении к бюджету пакет уменьшается, при запасе - растёт. Держится только модель пакета,
+// а прочитанная спецификация и компонентные схемы остаются в памяти целиком
+final class MemoryBudget {
+    private static final int INITIAL_BATCH_SIZE = 32;
+    private static final int MAX_BATCH_SIZE = 512;
+
+    // Эден не учитывается: в нём свежие объекты, в том числе мусор прошлых пакетов, а всё живое
+    // после сборки переезжает в остальные пулы. У сборщиков с одним пулом (ZGC, Shenandoah) это вся куча
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP && !pool.getName().endsWith("Eden Space"))
+            .toList();
+    private final long maxBytes;
+    private int batchSize = INITIAL_BATCH_SIZE;
+
+    MemoryBudget(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    // 256m, 1g, 65536k или просто байты
+    static long parseSize(String size) {
+        var value = size.trim().toLowerCase();
+        var multiplier = switch (value.isEmpty() ? ' ' : value.charAt(value.length() - 1)) {
+            case 'k' -> 1L << 10;
+            case 'm' -> 1L << 20;
+            case 'g' -> 1L << 30;
+            default -> 1L;
+        };
+        var digits = multiplier == 1 ? value : value.substring(0, value.length() - 1);
+        try {
+            return Math.multiplyExact(Long.parseLong(digits), multiplier);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid memory size: " + size, e);
+        }
+    }
+
+    int batchSize() {
+        return batchSize;
+    }
+
+    // true - куча близка к бюджету, и вызывающему стоит отпустить свои кэши
+    boolean afterBatch() {
+        var used = getLiveBytes();
+        if (used > maxBytes - maxBytes / 4) {
+            batchSize = Math.max(1, batchSize / 2);
+            return true;
+        }
+        if (used < maxBytes / 2) {
+            batchSize = Math.min(MAX_BATCH_SIZE, batchSize * 2);
+        }
+        return false;
+    }
+
+    // Пулы вне эдена меняются только при сборках, поэтому размер пакета не скачет вслед за выделениями.
+    // getCollectionUsage старого поколения не годится: до первой полной сборки он нулевой
+    private long getLiveBytes() {
+        long used = 0;
+        for (var pool : heapPools) {
+            used += pool.getUsage().getUsed();
+        }
+        return used;
+    }
+}
@@ -0,0 +1,135 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Каталог документации: файлы рендерятся и пишутся параллельно, совпадающие по содержимому не перезаписываются,
+// а файлы, записанные прошлым запуском и больше не нужные, удаляются. Чужие файлы в каталоге не трогаются
+public class MultiFileWriter {
+    private static final int COMPARE_BUFFER_SIZE = 64 * 1024;
+    // Список файлов последнего запуска, по одному относительному пути в строке
+    private static final String LISTING_FILE = ".openapi-md-files";
+
+    public record Result(int changedFiles, long bytesWritten) {
+    }
+
+    // Ключи - пути относительно каталога
+    public static Result write(Path directory, Map<String, Supplier<String>> files) throws IOException {
+        Files.createDirectories(directory);
+        var changedFiles = new AtomicInteger();
+        var bytesWritten = new AtomicLong();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<CompletableFuture<Void>>(files.size());
+            files.forEach((relativePath, content) -> futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    var written = writeIfChanged(directory.resolve(relativePath), content.get().getBytes(StandardCharsets.UTF_8));
+                    if (written >= 0) {
+                        changedFiles.incrementAndGet();
+                        bytesWritten.addAndGet(written);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor)));
+            Futures.join(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)));
+        }
+
+        changedFiles.addAndGet(deleteStaleFiles(directory, files.keySet()));
+        writeListing(directory, files.keySet());
+        return new Result(changedFiles.get(), bytesWritten.get());
+    }
+
+    // Имя файла из имени тэга или схемы; повторы различаются суффиксом
+    public static String toFileName(String name, Set<String> usedNames) {
+        var baseName = name.replaceAll("[^\\p{L}\\p{N}._-]+", "-");
+        if (baseName.isEmpty() || baseName.startsWith(".")) {
+            baseName = "_" + baseName;
+        }
+        var fileName = baseName;
+        for (int i = 2; !usedNames.add(fileName.toLowerCase()); i++) {
+            fileName = baseName + "-" + i;
+        }
+        return fileName + ".md";
+    }
+
+    // -1, если файл уже содержал те же байты
+    private static long writeIfChanged(Path file, byte[] bytes) throws IOException {
+        Files.createDirectories(file.getParent());
+        if (Files.isRegularFile(file) && Files.size(file) == bytes.length) {
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (contentEquals(channel, bytes)) {
+                    return -1;
+                }
+            }
+        }
+        // Через временный файл рядом, чтобы читатель каталога не увидел наполовину записанную страницу
+        var tempFile = DocumentGenerator.createTempFile(file);
+        try {
+            Files.write(tempFile, bytes);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return bytes.length;
+    }
+
+    private static boolean contentEquals(FileChannel channel, byte[] bytes) throws IOException {
+        var buffer = ByteBuffer.allocate(Math.min(COMPARE_BUFFER_SIZE, Math.max(1, bytes.length)));
+        var position = 0;
+        while (position < bytes.length) {
+            buffer.clear();
+            var read = channel.read(buffer, position);
+            if (read <= 0) {
+                return false;
+            }
+            buffer.flip();
+            if (buffer.mismatch(ByteBuffer.wrap(bytes, position, read)) >= 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private static int deleteStaleFiles(Path directory, Set<String> relativePaths) throws IOException {
+        var listing = directory.resolve(LISTING_FILE);
+        if (!Files.isRegularFile(listing)) {
+            // Первый запуск в этот каталог: что в нём наше, неизвестно, поэтому ничего не удаляется
+            return 0;
+        }
+
+        var expected = new HashSet<Path>();
+        relativePaths.forEach(p -> expected.add(directory.resolve(p).normalize()));
+        var deleted = 0;
+        for (var previousPath : Files.readAllLines(listing, StandardCharsets.UTF_8)) {
+            if (previousPath.isBlank()) {
+                continue;
+            }
+            var file = directory.resolve(previousPath).normalize();
+            if (file.startsWith(directory.normalize()) && !expected.contains(file) && Files.deleteIfExists(file)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private static void writeListing(Path directory, Set<String> relativePaths) throws IOException {
+        var listing = new StringBuilder();
+        relativePaths.forEach(p -> listing.append(p).append('\n'));
+        writeIfChanged(directory.resolve(LISTING_FILE), listing.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,62 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+// Документы на нескольких языках из одной спецификации: разбор и схемы общие, рендер по локалям параллельно.
+// Для docs.md пишутся docs.<локаль>.md
+public class MultiLocaleGenerator {
+    private final SpecParser specParser;
+    private final Map<Locale, MdRenderer> renderers;
+
+    public MultiLocaleGenerator(SpecParser specParser, Map<Locale, MdRenderer> renderers) {
+        this.specParser = specParser;
+        this.renderers = new LinkedHashMap<>(renderers);
+    }
+
+    public GenerationStats generateWithStats(Path specFile, Path outputFile) throws IOException {
+        var stats = new GenerationStats(specFile, outputFile);
+        var startedAt = System.nanoTime();
+
+        var openAPI = stats.measure(GenerationStats.Phase.READ, () -> specParser.read(specFile.toString()));
+        var schemas = stats.measure(GenerationStats.Phase.SCHEMAS, () -> specParser.parseSchemas(openAPI, stats));
+        var spec = stats.measure(GenerationStats.Phase.ENDPOINTS, () -> specParser.parse(openAPI, schemas, _ -> true));
+
+        // Каждая локаль рендерится сразу в свой файл
+        var futures = new ArrayList<CompletableFuture<Boolean>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            renderers.forEach((locale, renderer) -> futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return DocumentGenerator.writeIfChanged(getOutputFile(outputFile, locale), writer -> renderer.render(spec, writer), stats);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor)));
+        }
+        var updated = false;
+        for (var future : futures) {
+            updated |= Futures.join(future);
+        }
+
+        stats.finish(System.nanoTime() - startedAt, updated);
+        return stats;
+    }
+
+    public static Path getOutputFile(Path outputFile, Locale locale) {
+        var fileName = outputFile.getFileName().toString();
+        var dotIndex = fileName.lastIndexOf('.');
+        // Тэг как в --locales (ru-RU), а не Locale.toString (ru_RU)
+        var tag = locale.toLanguageTag();
+        var localizedName = dotIndex > 0
+                ? fileName.substring(0, dotIndex) + "." + tag + fileName.substring(dotIndex)
+                : fileName + "." + tag;
+        return outputFile.resolveSibling(localizedName);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+
+public final class ReferencedFiles {
+    // Значение $ref до фрагмента: '#/components/...' пропускается, 'common.yaml#/...' даёт 'common.yaml'
+    private static final Pattern EXTERNAL_REF = Pattern.compile("[\"']?\\$ref[\"']?\\s*:\\s*[\"']?([^\"'#\\s,}]+)");
+
+    private ReferencedFiles() {
+    }
+
+    public static List<Path> collect(Path specFile) throws IOException {
+        var files = new LinkedHashSet<Path>();
+        var queue = new ArrayDeque<Path>();
+        var root = specFile.toAbsolutePath().normalize();
+        files.add(root);
+        queue.add(root);
+
+        while (!queue.isEmpty()) {
+            var file = queue.poll();
+            var content = Files.readString(file, StandardCharsets.UTF_8);
+            var matcher = EXTERNAL_REF.matcher(content);
+            while (matcher.find()) {
+                var ref = matcher.group(1);
+                if (ref.contains("://")) {
+                    continue;
+                }
+                var referencedFile = file.resolveSibling(ref).normalize();
+                if (Files.isRegularFile(referencedFile) && files.add(referencedFile)) {
+                    queue.add(referencedFile);
+                }
+            }
+        }
+
+        return new ArrayList<>(files);
+    }
+}
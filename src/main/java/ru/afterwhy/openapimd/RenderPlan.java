@@ -0,0 +1,158 @@
+package ru.afterwhy.openapimd;
+
+import ru.afterwhy.openapimd.model.EndpointParameter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// Разметка, собранная один раз на локаль: все сообщения уже найдены, заголовки таблиц готовы.
+// Шаблон пользователя (properties-файл) переопределяет сообщения и ключи layout.* до сборки,
+// поэтому на рендер отдельных узлов он не влияет
+public final class RenderPlan {
+    private static final String PROPERTY_TYPE_PREFIX = "schema-property-type.";
+    private static final String PARAMETER_TYPE_PREFIX = "endpoint-parameter-type.";
+
+    private static final Map<String, String> defaultLayout = Map.of(
+            "layout.api-heading", "API",
+            "layout.operation-id", "**Operation ID:** ",
+            "layout.parameters-table.separator", "|----|----|----|----|",
+            "layout.properties-table.separator", "|-----|----------|----------|--------------|",
+            "layout.empty-description", "—",
+            "layout.required", "+",
+            "layout.optional", "-"
+    );
+
+    private final String fingerprint;
+    final String apiHeading;
+    final String operationIdLabel;
+    final String parametersHeading;
+    final String parametersTableHeader;
+    final String propertiesTableHeader;
+    final String requestHeading;
+    final String requestExampleHeading;
+    final String responseHeading;
+    final String responseExampleHeading;
+    final String schemasHeading;
+    final String schemaExampleHeading;
+    final String emptyDescription;
+    final String required;
+    final String optional;
+    final String defaultStringExample;
+    private final Map<EndpointParameter.Type, String> parameterTypes = new EnumMap<>(EndpointParameter.Type.class);
+    private final String unspecifiedParameterType;
+    private final Map<String, String> propertyTypes = new HashMap<>();
+    private final String arrayTypePrefix;
+    private final String arrayTypeSuffix;
+
+    private RenderPlan(Map<String, String> messages) {
+        this.apiHeading = messages.get("layout.api-heading");
+        this.operationIdLabel = messages.get("layout.operation-id");
+        this.parametersHeading = getMessage(messages, "endpoint.request.schema-properties.header");
+        this.parametersTableHeader = buildTableHeader(messages, "schema-parameters.table-header.", messages.get("layout.parameters-table.separator"));
+        this.propertiesTableHeader = buildTableHeader(messages, "schema-properties.table-header.", messages.get("layout.properties-table.separator"));
+        this.requestHeading = getMessage(messages, "endpoint.request");
+        this.requestExampleHeading = getMessage(messages, "endpoint.request.example");
+        this.responseHeading = getMessage(messages, "endpoint.response");
+        this.responseExampleHeading = getMessage(messages, "endpoint.response.example");
+        this.schemasHeading = getMessage(messages, "schemas.header");
+        this.schemaExampleHeading = getMessage(messages, "schemas.example");
+        this.emptyDescription = messages.get("layout.empty-description");
+        this.required = messages.get("layout.required");
+        this.optional = messages.get("layout.optional");
+        this.defaultStringExample = getMessage(messages, "default-examples.string");
+
+        for (var type : EndpointParameter.Type.values()) {
+            var message = messages.get(PARAMETER_TYPE_PREFIX + type.name().toLowerCase());
+            if (message != null) {
+                parameterTypes.put(type, message);
+            }
+        }
+        this.unspecifiedParameterType = messages.get(PARAMETER_TYPE_PREFIX + "unspecified");
+
+        messages.forEach((key, message) -> {
+            if (key.startsWith(PROPERTY_TYPE_PREFIX)) {
+                propertyTypes.put(key.substring(PROPERTY_TYPE_PREFIX.length()), message);
+            }
+        });
+        // Имя типа элементов подставляется между готовыми частями, без разбора формата на каждом свойстве.
+        // Без %s сообщение выводится как есть, как раньше с formatted()
+        var arrayType = propertyTypes.get("array");
+        var placeholder = arrayType != null ? arrayType.indexOf("%s") : -1;
+        this.arrayTypePrefix = placeholder >= 0 ? arrayType.substring(0, placeholder) : null;
+        this.arrayTypeSuffix = placeholder >= 0 ? arrayType.substring(placeholder + 2) : "";
+
+        var hash = new ContentHash();
+        new TreeMap<>(messages).forEach((key, message) -> hash.add(key).add(message));
+        this.fingerprint = hash.hex();
+    }
+
+    public static RenderPlan compile(Locale locale) {
+        return new RenderPlan(getMessages(locale, new Properties()));
+    }
+
+    public static RenderPlan compile(Locale locale, Path template) throws IOException {
+        var overrides = new Properties();
+        if (template != null) {
+            try (var reader = Files.newBufferedReader(template, StandardCharsets.UTF_8)) {
+                overrides.load(reader);
+            }
+        }
+        return new RenderPlan(getMessages(locale, overrides));
+    }
+
+    // Меняется вместе с любым сообщением или элементом разметки
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    String getParameterType(EndpointParameter.Type type) {
+        var message = type != null ? parameterTypes.get(type) : unspecifiedParameterType;
+        if (message == null) {
+            var suffix = type != null ? type.name().toLowerCase() : "unspecified";
+            throw new MissingResourceException("Missing message", RenderPlan.class.getName(), PARAMETER_TYPE_PREFIX + suffix);
+        }
+        return message;
+    }
+
+    String getPropertyTypeName(String type, String itemSchemaName) {
+        if (type.equals("array") && arrayTypePrefix != null) {
+            return arrayTypePrefix + itemSchemaName + arrayTypeSuffix;
+        }
+        var message = propertyTypes.get(type.toLowerCase());
+        if (message == null) {
+            throw new MissingResourceException("Missing message", RenderPlan.class.getName(), PROPERTY_TYPE_PREFIX + type.toLowerCase());
+        }
+        return message;
+    }
+
+    private static Map<String, String> getMessages(Locale locale, Properties overrides) {
+        var messages = new HashMap<>(defaultLayout);
+        var resourceBundle = ResourceBundle.getBundle("locale", locale);
+        for (var key : resourceBundle.keySet()) {
+            messages.put(key, resourceBundle.getString(key));
+        }
+        for (var key : overrides.stringPropertyNames()) {
+            messages.put(key, overrides.getProperty(key));
+        }
+        return messages;
+    }
+
+    private static String getMessage(Map<String, String> messages, String key) {
+        var message = messages.get(key);
+        if (message == null) {
+            throw new MissingResourceException("Missing message", RenderPlan.class.getName(), key);
+        }
+        return message;
+    }
+
+    private static String buildTableHeader(Map<String, String> messages, String prefix, String separator) {
+        return "| " + getMessage(messages, prefix + "type")
+                + " | " + getMessage(messages, prefix + "name")
+                + " | " + getMessage(messages, prefix + "description")
+                + " | " + getMessage(messages, prefix + "required")
+                + " |\n" + separator + "\n";
+    }
+}
@@ -0,0 +1,206 @@
+package ru.afterwhy.openapimd;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.swagger.v3.oas.models.OpenAPI;
+import ru.afterwhy.openapimd.model.Specification;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+public class RenderServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_SPECIFICATIONS = 64;
+    public static final long DEFAULT_MAX_OUTPUT_CHARS = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_REQUEST_BYTES = 16 * 1024 * 1024;
+    // Локаль приходит из запроса: рендереров (план и копия ObjectMapper на каждый) держим ограниченное число
+    private static final int MAX_RENDERERS = 16;
+
+    private final SpecParser specParser;
+    private final ObjectMapper objectMapper;
+    private final Locale defaultLocale;
+    private final Path template;
+    private final Executor renderExecutor;
+    private final int maxRequestBytes;
+    private final LruCache<Locale, MdRenderer> renderers = new LruCache<>(MAX_RENDERERS);
+    // Модель не зависит от локали и кэшируется по хэшу содержимого спецификации (вместе с файлами по $ref),
+    // в ключ готового документа добавляется локаль
+    private final LruCache<String, Specification> specifications;
+    private final LruCache<String, String> outputs;
+
+    public RenderServer(SpecParser specParser, ObjectMapper objectMapper, Locale defaultLocale, Executor renderExecutor) {
+        this(specParser, objectMapper, defaultLocale, null, renderExecutor);
+    }
+
+    // template - файл, переопределяющий сообщения и разметку, как --template в командной строке
+    public RenderServer(SpecParser specParser, ObjectMapper objectMapper, Locale defaultLocale, Path template, Executor renderExecutor) {
+        this(specParser, objectMapper, defaultLocale, template, renderExecutor, DEFAULT_MAX_SPECIFICATIONS, DEFAULT_MAX_OUTPUT_CHARS, DEFAULT_MAX_REQUEST_BYTES);
+    }
+
+    public RenderServer(SpecParser specParser, ObjectMapper objectMapper, Locale defaultLocale, Executor renderExecutor,
+                        int maxSpecifications, long maxOutputChars) {
+        this(specParser, objectMapper, defaultLocale, null, renderExecutor, maxSpecifications, maxOutputChars, DEFAULT_MAX_REQUEST_BYTES);
+    }
+
+    // maxRequestBytes - предел тела POST-запроса, больше - ответ 413
+    public RenderServer(SpecParser specParser, ObjectMapper objectMapper, Locale defaultLocale, Path template, Executor renderExecutor,
+                        int maxSpecifications, long maxOutputChars, int maxRequestBytes) {
+        this.specParser = specParser;
+        this.objectMapper = objectMapper;
+        this.defaultLocale = defaultLocale;
+        this.template = template;
+        this.renderExecutor = renderExecutor;
+        this.specifications = new LruCache<>(maxSpecifications);
+        this.outputs = new LruCache<>(maxOutputChars, String::length);
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    // GET /render?path= отдаёт любой читаемый процессом файл, поэтому по умолчанию сервер доступен только локально
+    public HttpServer start(int port) throws IOException {
+        return start(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public HttpServer start(InetAddress address, int port) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        // Обработчик в основном ждёт разбора и ввода-вывода, поэтому каждому запросу свой виртуальный поток
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/render", this::handleRender);
+        server.start();
+        return server;
+    }
+
+    private void handleRender(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                var query = parseQuery(exchange.getRequestURI().getRawQuery());
+                var locale = query.containsKey("locale") ? Locale.forLanguageTag(query.get("locale")) : defaultLocale;
+                byte[] requestBody = null;
+                if (exchange.getRequestMethod().equals("POST")) {
+                    // Читаем на байт больше предела, чтобы отличить тело ровно на пределе от слишком большого
+                    requestBody = exchange.getRequestBody().readNBytes(maxRequestBytes + 1);
+                    if (requestBody.length > maxRequestBytes) {
+                        sendText(exchange, 413, "Request body exceeds " + maxRequestBytes + " bytes");
+                        return;
+                    }
+                }
+                var source = switch (exchange.getRequestMethod()) {
+                    case "POST" -> SpecSource.ofContents(new String(requestBody, StandardCharsets.UTF_8));
+                    case "GET" -> SpecSource.ofFile(query.get("path"));
+                    default -> null;
+                };
+                if (source == null) {
+                    exchange.getResponseHeaders().set("Allow", "GET, POST");
+                    sendText(exchange, 405, "Method not allowed");
+                    return;
+                }
+
+                var key = new ContentHash().add(source.hash()).add(locale.toString()).hex();
+                var markdown = outputs.get(key);
+                var cacheStatus = "hit";
+                if (markdown == null) {
+                    var spec = specifications.get(source.hash());
+                    cacheStatus = "spec-hit";
+                    if (spec == null) {
+                        spec = specParser.parse(source.read(specParser));
+                        specifications.put(source.hash(), spec);
+                        cacheStatus = "miss";
+                    }
+                    markdown = getRenderer(locale).render(spec);
+                    outputs.put(key, markdown);
+                }
+
+                exchange.getResponseHeaders().set("X-Cache", cacheStatus);
+                exchange.getResponseHeaders().set("Content-Type", "text/markdown; charset=utf-8");
+                var body = markdown.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                sendText(exchange, 500, "Error building markdown: " + e.getMessage());
+            }
+        }
+    }
+
+    private MdRenderer getRenderer(Locale locale) {
+        // Два потока могут собрать рендерер одновременно: результат тот же, в кэше остаётся один
+        var renderer = renderers.get(locale);
+        if (renderer == null) {
+            try {
+                renderer = new MdRenderer(objectMapper, RenderPlan.compile(locale, template), renderExecutor);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read template: " + template, e);
+            }
+            renderers.put(locale, renderer);
+        }
+        return renderer;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        var body = String.valueOf(text).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        var query = new HashMap<String, String>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (var parameter : rawQuery.split("&")) {
+            var separator = parameter.indexOf('=');
+            var name = separator >= 0 ? parameter.substring(0, separator) : parameter;
+            var value = separator >= 0 ? parameter.substring(separator + 1) : "";
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private record SpecSource(String contents, Path file, String hash) {
+
+        static SpecSource ofContents(String contents) {
+            if (contents.isBlank()) {
+                throw new IllegalArgumentException("Request body must contain an OpenAPI spec");
+            }
+            return new SpecSource(contents, null, ContentHash.of(contents));
+        }
+
+        static SpecSource ofFile(String path) {
+            if (path == null || path.isEmpty()) {
+                throw new IllegalArgumentException("Query parameter 'path' is required");
+            }
+            var file = Path.of(path).toAbsolutePath().normalize();
+            if (!Files.isRegularFile(file)) {
+                throw new IllegalArgumentException("Spec file not found: " + path);
+            }
+
+            // Хэшируем содержимое, а не время изменения: правка файла по $ref тоже даёт новый ключ
+            try {
+                var hash = new ContentHash();
+                for (var referencedFile : ReferencedFiles.collect(file)) {
+                    hash.add(referencedFile.toString()).addFile(referencedFile);
+                }
+                return new SpecSource(null, file, hash.hex());
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unable to read spec file: " + path, e);
+            }
+        }
+
+        OpenAPI read(SpecParser specParser) {
+            return file != null ? specParser.read(file.toString()) : specParser.readContents(contents);
+        }
+    }
+}
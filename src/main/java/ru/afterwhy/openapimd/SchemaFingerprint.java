@@ -0,0 +1,74 @@
+package ru.afterwhy.openapimd;
+
+import io.swagger.v3.oas.models.media.ComposedSchema;
+import io.swagger.v3.oas.models.media.Schema;
+
+import java.util.*;
+
+// Структурный отпечаток встроенной схемы: всё, из чего строятся свойства, тип и пример.
+// Именованные схемы входят в отпечаток только именем, поэтому одинаковые обёртки над ними совпадают
+final class SchemaFingerprint {
+
+    private SchemaFingerprint() {
+    }
+
+    static String of(Schema<?> schema, SchemaGetter storage) {
+        var hash = new ContentHash();
+        add(hash, schema, storage, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return hash.hex();
+    }
+
+    private static void add(ContentHash hash, Schema<?> schema, SchemaGetter storage, Set<Schema<?>> path) {
+        if (schema == null) {
+            hash.add("null");
+            return;
+        }
+        var fullSchema = storage.getFullSchema(schema);
+        if (fullSchema.getName() != null) {
+            hash.add("ref").add(fullSchema.getName());
+            return;
+        }
+        if (!path.add(fullSchema)) {
+            hash.add("cycle");
+            return;
+        }
+
+        // $ref остаётся у ссылок, которые не удалось разрешить (внешние файлы, несуществующие компоненты)
+        hash.add(fullSchema.getClass().getName())
+                .add(fullSchema.get$ref())
+                .add(fullSchema.getType())
+                .add(fullSchema.getFormat())
+                .add(fullSchema.getDescription())
+                .add(fullSchema.getExample() != null ? fullSchema.getExample().toString() : null);
+
+        var required = fullSchema.getRequired() != null ? fullSchema.getRequired() : List.<String>of();
+        hash.add("required").add(String.valueOf(required.size()));
+        required.forEach(hash::add);
+
+        var properties = fullSchema.getProperties() != null ? fullSchema.getProperties() : Map.<String, Schema>of();
+        hash.add("properties").add(String.valueOf(properties.size()));
+        for (var property : properties.entrySet()) {
+            hash.add(property.getKey());
+            add(hash, property.getValue(), storage, path);
+        }
+
+        hash.add("items");
+        add(hash, fullSchema.getItems(), storage, path);
+
+        if (fullSchema instanceof ComposedSchema composedSchema) {
+            addAll(hash, "allOf", composedSchema.getAllOf(), storage, path);
+            addAll(hash, "oneOf", composedSchema.getOneOf(), storage, path);
+            addAll(hash, "anyOf", composedSchema.getAnyOf(), storage, path);
+        }
+
+        path.remove(fullSchema);
+    }
+
+    private static void addAll(ContentHash hash, String kind, List<Schema> schemas, SchemaGetter storage, Set<Schema<?>> path) {
+        var members = schemas != null ? schemas : List.<Schema>of();
+        hash.add(kind).add(String.valueOf(members.size()));
+        for (var member : members) {
+            add(hash, member, storage, path);
+        }
+    }
+}
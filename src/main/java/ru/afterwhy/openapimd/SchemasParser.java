@@ -3,31 +3,116 @@ package ru.afterwhy.openapimd;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.media.ComposedSchema;
 import io.swagger.v3.oas.models.media.Schema;
+import ru.afterwhy.openapimd.model.SpecExample;
 import ru.afterwhy.openapimd.model.SpecSchema;
 import ru.afterwhy.openapimd.model.SpecSchemaProperty;
 
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Locale;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class SchemasParser {
+    private static final String COMPONENTS_SCHEMAS_PREFIX = "#/components/schemas/";
 
-    private final Map<String, SpecSchema> alreadyCreatedSchemas = new LinkedHashMap<>();
+    private final Executor executor;
+    private final boolean deterministic;
+    private final GenerationStats stats;
+    private final Map<String, SpecSchema> alreadyCreatedSchemas = new ConcurrentHashMap<>();
+    private final Map<String, SpecSchema> placeholderSchemas = new ConcurrentHashMap<>();
+    // Встроенные схемы эндпойнтов по структурному отпечатку: одинаковые обёртки и конверты ошибок строятся один раз
+    // за разбор эндпойнтов, после него карта очищается
+    private final Map<String, SpecSchema> internedSchemas = new ConcurrentHashMap<>();
+    private final Map<String, Integer> resolutionRanks = new HashMap<>();
 
-    public SpecSchema parseSchema(SchemaStorage schemaStorage, Schema schema, Locale locale) {
-        return parseSchema(schemaStorage.getFullSchema(schema), schemaStorage, locale);
+    public SchemasParser() {
+        this(null);
     }
 
-    public SchemaStorage getSchemas(OpenAPI openAPI, Locale locale) {
+    public SchemasParser(Executor executor) {
+        this(executor, false);
+    }
+
+    // deterministic - примеры строятся от пути к схеме, а не от случайных значений и текущего времени
+    public SchemasParser(Executor executor, boolean deterministic) {
+        this(executor, deterministic, null);
+    }
+
+    // stats - счётчики разобранных схем, попаданий в уже построенные схемы и сгенерированных примеров
+    public SchemasParser(Executor executor, boolean deterministic, GenerationStats stats) {
+        this.executor = executor;
+        this.deterministic = deterministic;
+        this.stats = stats;
+    }
+
+    public SpecSchema parseSchema(SchemaStorage schemaStorage, Schema schema) {
+        return parseSchema(schemaStorage, schema, null);
+    }
+
+    public SpecSchema parseSchema(SchemaStorage schemaStorage, Schema schema, String seedPath) {
+        return parseSchema(schemaStorage.getFullSchema(schema), schemaStorage, Integer.MAX_VALUE, deterministic ? seedPath : null);
+    }
+
+    // Модель не зависит от локали: тексты подставляет рендерер
+    public SchemaStorage getSchemas(OpenAPI openAPI) {
         var allSchemas = getAllSchemas(openAPI);
-        var specSchemas = allSchemas.values().stream()
-                .map(s -> parseSchema(getSchema(s, allSchemas), scm -> getSchema(scm, allSchemas), locale))
-                .collect(Collectors.toMap(SpecSchema::name, s -> s));
+        SchemaGetter storage = scm -> getSchema(scm, allSchemas);
+        var dependencies = getDependencies(allSchemas);
+
+        // Зависимости разбираются раньше зависящих от них схем, поэтому ссылка на схему
+        // с рангом не меньше текущего - это обратная ссылка цикла, и она заменяется заглушкой
+        var resolutionOrder = getResolutionOrder(dependencies);
+        for (int i = 0; i < resolutionOrder.size(); i++) {
+            resolutionRanks.put(resolutionOrder.get(i), i);
+        }
+
+        if (executor == null) {
+            for (var schemaName : resolutionOrder) {
+                createSchema(allSchemas.get(schemaName), storage);
+            }
+        } else {
+            createSchemasInParallel(resolutionOrder, dependencies, allSchemas, storage);
+        }
+
+        var specSchemas = new LinkedHashMap<String, SpecSchema>();
+        allSchemas.forEach((name, schema) -> specSchemas.put(name, alreadyCreatedSchemas.get(schema.getName())));
         return new SchemaStorage(allSchemas, specSchemas);
     }
 
+    // Порядок, в котором getSchemas строит компонентные схемы: от него зависит, какая ссылка цикла станет заглушкой
+    static List<String> getResolutionOrder(OpenAPI openAPI) {
+        return getResolutionOrder(getDependencies(getAllSchemas(openAPI)));
+    }
+
+    private static Map<String, Set<String>> getDependencies(Map<String, Schema> allSchemas) {
+        var dependencies = new LinkedHashMap<String, Set<String>>();
+        for (var schema : allSchemas.values()) {
+            dependencies.computeIfAbsent(schema.getName(), _ -> getReferencedSchemaNames(schema, allSchemas));
+        }
+        return dependencies;
+    }
+
+    private void createSchemasInParallel(List<String> resolutionOrder,
+                                         Map<String, Set<String>> dependencies,
+                                         Map<String, Schema> allSchemas,
+                                         SchemaGetter storage) {
+        // Каждая схема строится ровно одной задачей после того, как построены все её зависимости
+        var schemaFutures = new HashMap<String, CompletableFuture<SpecSchema>>();
+        for (var schemaName : resolutionOrder) {
+            var rank = resolutionRanks.get(schemaName);
+            var awaitedSchemas = dependencies.get(schemaName).stream()
+                    .filter(dependency -> resolutionRanks.get(dependency) < rank)
+                    .map(schemaFutures::get)
+                    .toArray(CompletableFuture[]::new);
+            schemaFutures.put(schemaName, CompletableFuture.allOf(awaitedSchemas)
+                    .thenApplyAsync(_ -> createSchema(allSchemas.get(schemaName), storage), executor));
+        }
+
+        Futures.join(CompletableFuture.allOf(schemaFutures.values().toArray(CompletableFuture[]::new)));
+    }
+
     private static Schema getSchema(Schema<?> scm, Map<String, Schema> allSchemas) {
         if (scm.getName() != null) {
             return allSchemas.get(scm.getName());
@@ -35,61 +120,149 @@ public class SchemasParser {
         return resolveSchema(allSchemas, scm);
     }
 
-    private SpecSchema parseSchema(Schema<?> schema, SchemaGetter storage, Locale locale) {
+    private SpecSchema createSchema(Schema<?> schema, SchemaGetter storage) {
         var schemaName = schema.getName();
-        if (schemaName != null) {
-            if (alreadyCreatedSchemas.containsKey(schemaName)) {
-                return alreadyCreatedSchemas.get(schemaName);
+        var specSchema = buildSchema(schema, storage, resolutionRanks.get(schemaName), deterministic ? schemaName : null);
+        alreadyCreatedSchemas.put(schemaName, specSchema);
+        if (stats != null) {
+            stats.schemaResolved();
+        }
+        return specSchema;
+    }
+
+    private SpecSchema parseSchema(Schema<?> schema, SchemaGetter storage, int rootRank, String seedPath) {
+        var schemaName = schema.getName();
+        var rank = schemaName != null ? resolutionRanks.get(schemaName) : null;
+        if (rank == null) {
+            // Внутри компонентной схемы результат зависит от её ранга (заглушки циклов), поэтому
+            // общими делаются только встроенные схемы вне компонентов
+            return rootRank == Integer.MAX_VALUE
+                    ? getInternedSchema(schema, storage, seedPath)
+                    : buildSchema(schema, storage, rootRank, seedPath);
+        }
+        if (rank >= rootRank) {
+            return getPlaceholderSchema(schema);
+        }
+
+        var createdSchema = alreadyCreatedSchemas.get(schemaName);
+        if (createdSchema == null) {
+            throw new IllegalStateException("Schema is not resolved yet: " + schemaName);
+        }
+        if (stats != null) {
+            stats.memoHit();
+        }
+        return createdSchema;
+    }
+
+    void clearInternedSchemas() {
+        internedSchemas.clear();
+    }
+
+    private SpecSchema getInternedSchema(Schema<?> schema, SchemaGetter storage, String seedPath) {
+        var fingerprint = SchemaFingerprint.of(schema, storage);
+        var internedSchema = internedSchemas.get(fingerprint);
+        if (internedSchema != null) {
+            if (stats != null) {
+                stats.memoHit();
             }
+            return internedSchema;
         }
 
-        var parameters = getParameters(schema, storage, locale);
-        SpecSchema itemSpec = null;
-        if (schema.getItems() != null) {
-            itemSpec = parseSchema(storage.getFullSchema(schema.getItems()), storage, locale);
+        // Пример общий для всех мест, поэтому детерминированный пример строится от отпечатка, а не от пути.
+        // Без computeIfAbsent: построение рекурсивно интернирует вложенные схемы в ту же карту
+        var specSchema = buildSchema(schema, storage, Integer.MAX_VALUE, seedPath != null ? "inline:" + fingerprint : null);
+        var previous = internedSchemas.putIfAbsent(fingerprint, specSchema);
+        return previous != null ? previous : specSchema;
+    }
+
+    // Промах - любая построенная SpecSchema, компонентная или встроенная: попадания и промахи вместе дают все обращения
+    private SpecSchema buildSchema(Schema<?> schema, SchemaGetter storage, int rootRank, String seedPath) {
+        if (stats != null) {
+            stats.memoMiss();
         }
-        var specSchema = new SpecSchema(
-                schemaName,
+        var parameters = getParameters(schema, storage, rootRank, seedPath);
+        var itemSpec = schema.getItems() != null
+                ? parseSchema(storage.getFullSchema(schema.getItems()), storage, rootRank, seedPath != null ? seedPath + "[]" : null)
+                : null;
+        return new SpecSchema(
+                schema.getName(),
                 schema.getDescription(),
                 parameters,
-                ExampleGenerator.getExample(schema, itemSpec, parameters, storage, locale),
+                lazyExample(schema.getName(), () -> ExampleGenerator.getExample(schema, itemSpec, parameters, storage, seedPath)),
                 itemSpec
         );
-        if (schemaName != null) {
-            alreadyCreatedSchemas.put(schemaName, specSchema);
-        }
-        return specSchema;
     }
 
-    private List<SpecSchemaProperty> getParameters(Schema<?> schema, SchemaGetter storage, Locale locale) {
-        return getProperties(schema, storage).entrySet()
+    private SpecExample lazyExample(String schemaName, Supplier<Object> generator) {
+        return SpecExample.lazy(() -> {
+            var event = new ExampleGenerationEvent();
+            event.begin();
+            var example = generator.get();
+            event.end();
+            if (event.shouldCommit()) {
+                event.schema = schemaName;
+                event.commit();
+            }
+            if (stats != null) {
+                stats.exampleGenerated();
+            }
+            return example;
+        });
+    }
+
+    private SpecSchema getPlaceholderSchema(Schema<?> schema) {
+        // Заглушка обратной ссылки: имя и описание без свойств, чтобы разорвать цикл
+        return placeholderSchemas.computeIfAbsent(
+                schema.getName(),
+                name -> new SpecSchema(name, schema.getDescription(), List.of(), SpecExample.of(Map.of()), null)
+        );
+    }
+
+    private boolean isPlaceholder(SpecSchema specSchema) {
+        return specSchema.name() != null && placeholderSchemas.get(specSchema.name()) == specSchema;
+    }
+
+    // Единственная копия списка: он же уходит и в SpecSchema, и в генератор примера. Список точного размера,
+    // из одного-двух свойств - без массива
+    private List<SpecSchemaProperty> getParameters(Schema<?> schema, SchemaGetter storage, int rootRank, String seedPath) {
+        return List.of(getProperties(schema, storage, new HashSet<>()).entrySet()
                 .stream()
                 .map(e -> {
                     var paramName = e.getKey();
+                    var parameterSeedPath = seedPath != null ? seedPath + "." + paramName : null;
                     Schema<?> parameterSchema = storage.getFullSchema(e.getValue());
-                    var parameterSpecSchema = parseSchema(parameterSchema, storage, locale);
+                    var parameterSpecSchema = parseSchema(parameterSchema, storage, rootRank, parameterSeedPath);
                     var required = schema.getRequired() != null ? schema.getRequired() : List.of();
+                    // Пример свойства совпадает с примером его схемы, кроме заглушки обратной ссылки
+                    var example = isPlaceholder(parameterSpecSchema)
+                            ? lazyExample(parameterSchema.getName(), () -> ExampleGenerator.getExample(parameterSchema, parameterSpecSchema.itemSpec(), parameterSpecSchema.properties(), storage, parameterSeedPath))
+                            : parameterSpecSchema.example();
                     return new SpecSchemaProperty(
                             parameterSpecSchema,
                             paramName,
                             parameterSchema.getType(),
                             parameterSchema.getFormat(),
                             parameterSchema.getDescription(),
-                            ExampleGenerator.getExample(parameterSchema, parameterSpecSchema.itemSpec(), parameterSpecSchema.properties(), storage, locale),
+                            example,
                             required.contains(paramName)
                     );
-                }).toList();
+                }).toArray(SpecSchemaProperty[]::new));
     }
 
-    private static Map<String, Schema> getProperties(Schema<?> schema, SchemaGetter storage) {
+    private static Map<String, Schema> getProperties(Schema<?> schema, SchemaGetter storage, Set<String> visitedSchemas) {
         Map<String, Schema> properties = new LinkedHashMap<>();
 
+        if (schema.getName() != null && !visitedSchemas.add(schema.getName())) {
+            // Циклический allOf
+            return properties;
+        }
+
         if (schema instanceof ComposedSchema composedSchema) {
             //todo is it possible to support oneOf or anyOf?
             if (composedSchema.getAllOf() != null) {
                 var composedProperties = composedSchema.getAllOf()
                         .stream()
-                        .flatMap(s -> getProperties(storage.getFullSchema(s), storage).entrySet().stream())
+                        .flatMap(s -> getProperties(storage.getFullSchema(s), storage, visitedSchemas).entrySet().stream())
                         .collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.mapping(Map.Entry::getValue, Collectors.toList())))
                         .entrySet().stream()
                         .map(e -> Map.entry(e.getKey(), e.getValue().isEmpty() ? null : e.getValue().getLast()))
@@ -106,26 +279,106 @@ public class SchemasParser {
         return properties;
     }
 
+    private static List<String> getResolutionOrder(Map<String, Set<String>> dependencies) {
+        // Обратный топологический порядок (сначала зависимости) итеративным обходом в глубину
+        var order = new ArrayList<String>(dependencies.size());
+        var visited = new HashSet<String>();
+        var stack = new ArrayDeque<Map.Entry<String, Iterator<String>>>();
+
+        for (var rootName : dependencies.keySet()) {
+            if (!visited.add(rootName)) {
+                continue;
+            }
+            stack.push(Map.entry(rootName, dependencies.get(rootName).iterator()));
+            while (!stack.isEmpty()) {
+                var top = stack.peek();
+                if (top.getValue().hasNext()) {
+                    var dependency = top.getValue().next();
+                    if (dependencies.containsKey(dependency) && visited.add(dependency)) {
+                        stack.push(Map.entry(dependency, dependencies.get(dependency).iterator()));
+                    }
+                } else {
+                    stack.pop();
+                    order.add(top.getKey());
+                }
+            }
+        }
+
+        return order;
+    }
+
+    private static Set<String> getReferencedSchemaNames(Schema<?> root, Map<String, Schema> allSchemas) {
+        // Повторяет обход parseSchema: по ссылкам разбор останавливается, а свойства
+        // именованных схем из allOf вливаются в текущую схему и обходятся дальше
+        var names = new LinkedHashSet<String>();
+        var mergedSchemas = new HashSet<String>();
+        var stack = new ArrayDeque<Schema<?>>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            var schema = stack.pop();
+            var children = new ArrayList<Schema<?>>();
+            if (schema.getItems() != null) {
+                children.add(schema.getItems());
+            }
+            if (schema.getProperties() != null) {
+                schema.getProperties().values().forEach(children::add);
+            }
+            for (var child : children) {
+                var namedSchema = getNamedSchema(child, allSchemas);
+                if (namedSchema != null) {
+                    names.add(namedSchema.getName());
+                } else {
+                    stack.push(child);
+                }
+            }
+            if (schema instanceof ComposedSchema composedSchema && composedSchema.getAllOf() != null) {
+                for (var member : composedSchema.getAllOf()) {
+                    var namedSchema = getNamedSchema(member, allSchemas);
+                    if (namedSchema == null) {
+                        stack.push(member);
+                    } else {
+                        names.add(namedSchema.getName());
+                        if (mergedSchemas.add(namedSchema.getName())) {
+                            stack.push(namedSchema);
+                        }
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    private static Schema<?> getNamedSchema(Schema<?> schema, Map<String, Schema> allSchemas) {
+        var ref = schema.get$ref();
+        if (ref != null) {
+            return ref.startsWith(COMPONENTS_SCHEMAS_PREFIX)
+                    ? allSchemas.get(ref.substring(COMPONENTS_SCHEMAS_PREFIX.length()))
+                    : null;
+        }
+        return schema.getName() != null ? allSchemas.get(schema.getName()) : null;
+    }
+
     private static Schema<?> resolveSchema(Map<String, Schema> allSchemas, Schema schema) {
         var ref = schema.get$ref();
-        if (ref != null && ref.startsWith("#/components/schemas/")) {
-            String schemaName = ref.substring("#/components/schemas/".length());
+        if (ref != null && ref.startsWith(COMPONENTS_SCHEMAS_PREFIX)) {
+            String schemaName = ref.substring(COMPONENTS_SCHEMAS_PREFIX.length());
             return resolveSchema(allSchemas, allSchemas.get(schemaName));
         }
         return schema;
     }
 
     private static Map<String, Schema> getAllSchemas(OpenAPI openAPI) {
-        var allSchemas = openAPI.getComponents() != null && openAPI.getComponents().getSchemas() != null
-                ? openAPI.getComponents().getSchemas().entrySet().stream()
-                .map(e -> {
-                    e.getValue().setName(e.getKey());
-                    return Map.entry(e.getKey(), e.getValue());
-                }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
-                : Map.<String, Schema>of();
-        return allSchemas.entrySet()
-                .stream()
-                .map(e -> Map.entry(e.getKey(), resolveSchema(allSchemas, e.getValue())))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        var allSchemas = new LinkedHashMap<String, Schema>();
+        if (openAPI.getComponents() != null && openAPI.getComponents().getSchemas() != null) {
+            openAPI.getComponents().getSchemas().forEach((name, schema) -> {
+                // Схемы из ExternalRefCache общие для спецификаций и уже названы: повторная запись не нужна
+                if (!name.equals(schema.getName())) {
+                    schema.setName(name);
+                }
+                allSchemas.put(name, schema);
+            });
+        }
+        allSchemas.replaceAll((_, schema) -> resolveSchema(allSchemas, schema));
+        return allSchemas;
     }
 }
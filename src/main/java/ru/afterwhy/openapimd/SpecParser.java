@@ -7,14 +7,21 @@ import io.swagger.v3.oas.models.Paths;
 import io.swagger.v3.oas.models.media.Content;
 import io.swagger.v3.oas.models.responses.ApiResponse;
 import io.swagger.v3.parser.OpenAPIV3Parser;
+import io.swagger.v3.parser.core.models.ParseOptions;
 import ru.afterwhy.openapimd.model.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 public class SpecParser {
-    private static final Map<HttpMethod, Function<PathItem, Operation>> operationGetters = Map.of(
+    private static final Map<HttpMethod, Function<PathItem, Operation>> operationGetters = new EnumMap<>(Map.of(
             HttpMethod.GET, PathItem::getGet,
             HttpMethod.POST, PathItem::getPost,
             HttpMethod.PUT, PathItem::getPut,
@@ -23,87 +30,222 @@ public class SpecParser {
             HttpMethod.PATCH, PathItem::getPatch,
             HttpMethod.TRACE, PathItem::getTrace,
             HttpMethod.HEAD, PathItem::getHead
-    );
-    private static final SchemasParser schemasParser = new SchemasParser();
+    ));
+
+    private final Executor executor;
+    private final StreamingSpecReader streamingReader;
+    private final boolean deterministic;
+    private final ExternalRefCache externalRefCache;
+
+    public SpecParser() {
+        this(null);
+    }
+
+    public SpecParser(Executor executor) {
+        this(executor, null);
+    }
+
+    public SpecParser(Executor executor, StreamingSpecReader streamingReader) {
+        this(executor, streamingReader, false);
+    }
+
+    public SpecParser(Executor executor, StreamingSpecReader streamingReader, boolean deterministic) {
+        this(executor, streamingReader, deterministic, null);
+    }
+
+    // externalRefCache - схемы из внешних файлов по $ref берутся из общего на запуск кэша, а не разбираются для каждой спецификации
+    public SpecParser(Executor executor, StreamingSpecReader streamingReader, boolean deterministic, ExternalRefCache externalRefCache) {
+        this.executor = executor;
+        this.streamingReader = streamingReader;
+        this.deterministic = deterministic;
+        this.externalRefCache = externalRefCache;
+    }
+
+    // Модель не зависит от локали, одну разобранную спецификацию можно рендерить в разные локали
+    public Specification parse(String specFile) {
+        return parse(read(specFile));
+    }
+
+    public OpenAPI read(String specFile) {
+        if (streamingReader != null) {
+            try {
+                return streamingReader.read(Path.of(specFile));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to parse spec file: " + specFile, e);
+            }
+        }
+
+        if (externalRefCache != null) {
+            var options = new ParseOptions();
+            options.setResolve(false);
+            var openAPI = new OpenAPIV3Parser().read(specFile, null, options);
+            if (openAPI == null) {
+                throw new RuntimeException("Unable to parse spec file: " + specFile);
+            }
+            externalRefCache.resolve(openAPI, Path.of(specFile));
+            return openAPI;
+        }
 
-    public Specification parse(String specFile, Locale locale) {
         OpenAPI openAPI = new OpenAPIV3Parser().read(specFile);
 
         if (openAPI == null) {
             throw new RuntimeException("Unable to parse spec file: " + specFile);
         }
 
+        return openAPI;
+    }
+
+    public OpenAPI readContents(String content) {
+        if (streamingReader != null) {
+            try {
+                return streamingReader.readContents(content);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to parse spec contents", e);
+            }
+        }
+
+        var options = new ParseOptions();
+        options.setResolve(true);
+        var result = new OpenAPIV3Parser().readContents(content, null, options);
+
+        if (result == null || result.getOpenAPI() == null) {
+            var messages = result != null && result.getMessages() != null ? result.getMessages() : List.<String>of();
+            throw new RuntimeException("Unable to parse spec contents: " + String.join("; ", messages));
+        }
+
+        return result.getOpenAPI();
+    }
+
+    public Specification parse(OpenAPI openAPI) {
+        return parse(openAPI, parseSchemas(openAPI), _ -> true);
+    }
+
+    ParsedSchemas parseSchemas(OpenAPI openAPI) {
+        return parseSchemas(openAPI, null);
+    }
+
+    ParsedSchemas parseSchemas(OpenAPI openAPI, GenerationStats stats) {
+        // Кэш схем живёт только в рамках разбора одной спецификации
+        var schemasParser = new SchemasParser(executor, deterministic, stats);
+        return new ParsedSchemas(schemasParser, schemasParser.getSchemas(openAPI));
+    }
+
+    Specification parse(OpenAPI openAPI, ParsedSchemas schemas, Predicate<SpecOperation> includeEndpoint) {
         var info = openAPI.getInfo();
-        var tags = getTags(openAPI);
-        var schemaStorage = schemasParser.getSchemas(openAPI, locale);
-        return new Specification(info.getTitle(), info.getDescription(), tags, getEndpoints(openAPI, tags, schemaStorage, locale), schemaStorage.getSchemaSpecs());
+        var operations = extractOperations(openAPI.getPaths());
+        var tags = getTags(openAPI, operations);
+        var includedOperations = operations.stream()
+                .filter(o -> includeEndpoint.test(new SpecOperation(o.method(), o.path())))
+                .toList();
+        var endpoints = getEndpoints(includedOperations, schemas.parser(), schemas.storage());
+        return new Specification(info.getTitle(), info.getDescription(), tags, endpoints, schemas.storage().getSchemaSpecs());
     }
 
-    private static Map<String, List<SpecOperation>> groupOperationsByTag(Paths paths) {
-        Map<String, List<SpecOperation>> operationsByTag = new HashMap<>();
+    // Эндпойнты только переданных операций, в том же порядке: без обхода всех путей и без построения тэгов
+    List<SpecApiEndpoint> parseEndpoints(OpenAPI openAPI, ParsedSchemas schemas, List<SpecOperation> operations) {
+        var extractedOperations = operations.stream()
+                .map(o -> new ExtractedOperation(o.httpMethod(), o.path(), getOperation(openAPI, o.httpMethod(), o.path())))
+                .toList();
+        return getEndpoints(extractedOperations, schemas.parser(), schemas.storage());
+    }
+
+    boolean isDeterministic() {
+        return deterministic;
+    }
+
+    static List<SpecTag> getTags(OpenAPI openAPI) {
+        return getTags(openAPI, extractOperations(openAPI.getPaths()));
+    }
+
+    static String getSummary(OpenAPI openAPI, SpecOperation operation) {
+        var summary = getOperation(openAPI, operation.httpMethod(), operation.path()).getSummary();
+        return SpecApiEndpoint.getSummaryEvenIfNotExists(summary, operation.httpMethod(), operation.path());
+    }
+
+    static Operation getOperation(OpenAPI openAPI, HttpMethod method, String path) {
+        var pathItem = openAPI.getPaths() != null ? openAPI.getPaths().get(path) : null;
+        return pathItem != null ? operationGetters.get(method).apply(pathItem) : null;
+    }
+
+    private static List<ExtractedOperation> extractOperations(Paths paths) {
+        // Единственный проход по путям и методам: из него строятся и тэги, и эндпойнты
+        var operations = new ArrayList<ExtractedOperation>();
+        if (paths == null) {
+            return operations;
+        }
 
         for (Map.Entry<String, PathItem> pathEntry : paths.entrySet()) {
             String path = pathEntry.getKey();
             PathItem pathItem = pathEntry.getValue();
 
             operationGetters.forEach((method, operationGetter) -> {
-                addOperationToTags(operationsByTag, pathItem, path, method, operationGetter);
+                var operation = operationGetter.apply(pathItem);
+                if (operation != null) {
+                    operations.add(new ExtractedOperation(method, path, operation));
+                }
             });
         }
 
-        return operationsByTag;
+        return operations;
     }
 
-    private static void addOperationToTags(Map<String, List<SpecOperation>> operationsByTag, PathItem pathItem, String path, HttpMethod method, Function<PathItem, Operation> operationSupplier) {
-        var operation = operationSupplier.apply(pathItem);
-        if (operation != null) {
-            addOperationToTags(operationsByTag, method, operation.getTags(), path);
-        }
-    }
+    private static Map<String, List<SpecOperation>> groupOperationsByTag(List<ExtractedOperation> operations) {
+        Map<String, List<SpecOperation>> operationsByTag = new HashMap<>();
 
-    private static void addOperationToTags(Map<String, List<SpecOperation>> operationsByTag, HttpMethod method, List<String> tags, String path) {
-        if (tags != null) {
-            for (String tag : tags) {
-                operationsByTag.computeIfAbsent(tag, _ -> new ArrayList<>()).add(new SpecOperation(method, path));
+        for (var operation : operations) {
+            var tags = operation.operation().getTags();
+            if (tags != null) {
+                for (String tag : tags) {
+                    operationsByTag.computeIfAbsent(tag, _ -> new ArrayList<>()).add(new SpecOperation(operation.method(), operation.path()));
+                }
             }
         }
+
+        return operationsByTag;
     }
 
-    private static List<SpecTag> getTags(OpenAPI openAPI) {
-        var operationsByTag = groupOperationsByTag(openAPI.getPaths());
+    private static List<SpecTag> getTags(OpenAPI openAPI, List<ExtractedOperation> operations) {
+        if (openAPI.getTags() == null) {
+            return List.of();
+        }
+        var operationsByTag = groupOperationsByTag(operations);
         return openAPI.getTags().stream()
-                .map(t -> new SpecTag(t.getName(), t.getDescription(), operationsByTag.get(t.getName())))
+                .map(t -> new SpecTag(t.getName(), t.getDescription(), operationsByTag.getOrDefault(t.getName(), List.of())))
                 .toList();
     }
 
-    private static List<SpecApiEndpoint> getEndpoints(OpenAPI openAPI, List<SpecTag> tags, SchemaStorage schemaStorage, Locale locale) {
-        return openAPI.getPaths().entrySet().stream()
-                .flatMap(kv -> {
-                    var path = kv.getKey();
-                    var pathItem = kv.getValue();
-
-                    return operationGetters.entrySet().stream().map(o -> {
-                        return operationToEndpoint(schemaStorage, o.getKey(), o.getValue(), path, pathItem, locale);
-                    });
-                })
-                .filter(Objects::nonNull)
-                .toList();
-    }
+    private List<SpecApiEndpoint> getEndpoints(List<ExtractedOperation> operations, SchemasParser schemasParser, SchemaStorage schemaStorage) {
+        try {
+            if (executor == null) {
+                return operations.stream()
+                        .map(o -> operationToEndpoint(schemasParser, schemaStorage, o))
+                        .toList();
+            }
 
-    private static SpecApiEndpoint operationToEndpoint(SchemaStorage schemaStorage, HttpMethod method, Function<PathItem, Operation> operationGetter, String path, PathItem pathItem, Locale locale) {
-        var operation = operationGetter.apply(pathItem);
-        if (operation == null) {
-            return null;
+            // Эндпойнты строятся параллельно, но собираются в исходном порядке
+            var endpointFutures = operations.stream()
+                    .map(o -> CompletableFuture.supplyAsync(() -> operationToEndpoint(schemasParser, schemaStorage, o), executor))
+                    .toList();
+            return List.copyOf(Futures.joinAll(endpointFutures));
+        } finally {
+            // Встроенные схемы общие только в пределах одного разбора: пакеты --memory-budget
+            // и пересборки --watch с теми же компонентными схемами их не накапливают
+            schemasParser.clearInternedSchemas();
         }
+    }
 
-        var request = getRequestSpec(schemaStorage, locale, operation);
-        var responses = getResponses(schemaStorage, locale, operation);
+    private static SpecApiEndpoint operationToEndpoint(SchemasParser schemasParser, SchemaStorage schemaStorage, ExtractedOperation extractedOperation) {
+        var operation = extractedOperation.operation();
+        // Путь для детерминированных примеров встроенных схем тел запроса и ответа
+        var seedPath = extractedOperation.method().name() + " " + extractedOperation.path();
+        var request = getRequestSpec(schemasParser, schemaStorage, operation, seedPath);
+        var responses = getResponses(schemasParser, schemaStorage, operation, seedPath);
 
         var parameters = getParameters(operation);
         return new SpecApiEndpoint(
                 operation.getOperationId(),
-                method,
-                path,
+                extractedOperation.method(),
+                extractedOperation.path(),
                 operation.getSummary(),
                 operation.getDescription(),
                 operation.getTags(),
@@ -113,35 +255,35 @@ public class SpecParser {
         );
     }
 
-    private static ExchangeContent getRequestSpec(SchemaStorage schemaStorage, Locale locale, Operation operation) {
+    private static ExchangeContent getRequestSpec(SchemasParser schemasParser, SchemaStorage schemaStorage, Operation operation, String seedPath) {
         if (operation.getRequestBody() == null) {
             return null;
         }
-        return getExchangeContent(schemaStorage, locale, () -> operation.getRequestBody().getContent());
+        return getExchangeContent(schemasParser, schemaStorage, () -> operation.getRequestBody().getContent(), seedPath + " request");
     }
 
-    private static ResponseDescriptor getResponses(SchemaStorage schemaStorage, Locale locale, Operation operation) {
+    private static ResponseDescriptor getResponses(SchemasParser schemasParser, SchemaStorage schemaStorage, Operation operation, String seedPath) {
         var responseSpecs = new HashMap<Integer, ExchangeContent>();
         for (Map.Entry<String, ApiResponse> response : operation.getResponses().entrySet()) {
             var httpCode = Integer.parseInt(response.getKey());
-            var exchangeContent = getExchangeContent(schemaStorage, locale, () -> response.getValue().getContent());
+            var exchangeContent = getExchangeContent(schemasParser, schemaStorage, () -> response.getValue().getContent(), seedPath + " " + httpCode);
             responseSpecs.put(httpCode, exchangeContent);
         }
-        return new ResponseDescriptor(responseSpecs);
+        return ResponseDescriptor.of(responseSpecs);
     }
 
-    private static ExchangeContent getExchangeContent(SchemaStorage schemaStorage, Locale locale, Supplier<Content> contentSupplier) {
+    private static ExchangeContent getExchangeContent(SchemasParser schemasParser, SchemaStorage schemaStorage, Supplier<Content> contentSupplier, String seedPath) {
         var requestContents = new LinkedHashMap<String, SpecSchema>();
         var content = contentSupplier.get();
         ;
         for (String mimeType : content.keySet()) {
             var mediaType = content.get(mimeType);
             if (mediaType != null && mediaType.getSchema() != null) {
-                var specSchema = schemasParser.parseSchema(schemaStorage, mediaType.getSchema(), locale);
+                var specSchema = schemasParser.parseSchema(schemaStorage, mediaType.getSchema(), seedPath + " " + mimeType);
                 requestContents.put(mimeType, specSchema);
             }
         }
-        return new ExchangeContent(requestContents);
+        return ExchangeContent.of(requestContents);
     }
 
     private static List<EndpointParameter> getParameters(Operation operation) {
@@ -156,4 +298,9 @@ public class SpecParser {
         }).toList();
     }
 
+    private record ExtractedOperation(HttpMethod method, String path, Operation operation) {
+    }
+
+    record ParsedSchemas(SchemasParser parser, SchemaStorage storage) {
+    }
 }
@@ -0,0 +1,97 @@
+package ru.afterwhy.openapimd;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class SpecWatcher {
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(50);
+
+    private final DocumentGenerator documentGenerator;
+    private final Map<Path, Path> outputFiles;
+    private final Duration debounce;
+    private final Map<Path, Set<Path>> watchedFilesBySpec = new HashMap<>();
+    private final Map<Path, WatchKey> watchedDirectories = new HashMap<>();
+
+    public SpecWatcher(DocumentGenerator documentGenerator, Map<Path, Path> outputFiles) {
+        this(documentGenerator, outputFiles, DEFAULT_DEBOUNCE);
+    }
+
+    public SpecWatcher(DocumentGenerator documentGenerator, Map<Path, Path> outputFiles, Duration debounce) {
+        this.documentGenerator = documentGenerator;
+        this.outputFiles = outputFiles;
+        this.debounce = debounce;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        try (var watchService = FileSystems.getDefault().newWatchService()) {
+            for (var specFile : outputFiles.keySet()) {
+                regenerate(specFile, watchService);
+            }
+
+            while (!Thread.currentThread().isInterrupted()) {
+                var changedFiles = new HashSet<Path>();
+                collectChanges(watchService.take(), changedFiles);
+
+                // Серия сохранений (редакторы пишут файл в несколько приёмов) сливается в одну пересборку
+                WatchKey key;
+                while ((key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    collectChanges(key, changedFiles);
+                }
+
+                for (var specFile : outputFiles.keySet()) {
+                    var watchedFiles = watchedFilesBySpec.getOrDefault(specFile, Set.of());
+                    if (changedFiles.stream().anyMatch(watchedFiles::contains)) {
+                        regenerate(specFile, watchService);
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectChanges(WatchKey key, Set<Path> changedFiles) {
+        var directory = (Path) key.watchable();
+        for (var event : key.pollEvents()) {
+            if (event.kind() != OVERFLOW) {
+                changedFiles.add(directory.resolve((Path) event.context()).toAbsolutePath().normalize());
+            } else {
+                // События потеряны: считаем изменившимися все отслеживаемые файлы
+                watchedFilesBySpec.values().forEach(changedFiles::addAll);
+            }
+        }
+        key.reset();
+    }
+
+    private void regenerate(Path specFile, WatchService watchService) throws IOException {
+        var outputFile = outputFiles.get(specFile);
+        var startedAt = System.nanoTime();
+        try {
+            var updated = documentGenerator.generate(specFile, outputFile);
+            var elapsed = Duration.ofNanos(System.nanoTime() - startedAt).toMillis();
+            System.out.println((updated ? "Updated %s in %d ms" : "%s is up to date (%d ms)").formatted(outputFile, elapsed));
+        } catch (RuntimeException | IOException e) {
+            // Во время редактирования спецификация может быть временно некорректной: ждём следующего сохранения
+            System.out.println("Error building markdown file for %s: %s".formatted(specFile, e.getMessage()));
+        }
+
+        // Набор внешних $ref мог измениться
+        Set<Path> watchedFiles;
+        try {
+            watchedFiles = new HashSet<>(ReferencedFiles.collect(specFile));
+        } catch (IOException e) {
+            watchedFiles = new HashSet<>(watchedFilesBySpec.getOrDefault(specFile, Set.of()));
+            watchedFiles.add(specFile.toAbsolutePath().normalize());
+        }
+        watchedFilesBySpec.put(specFile, watchedFiles);
+        for (var file : watchedFiles) {
+            var directory = file.getParent();
+            if (!watchedDirectories.containsKey(directory)) {
+                watchedDirectories.put(directory, directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE));
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package ru.afterwhy.openapimd;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.Paths;
+import io.swagger.v3.oas.models.info.Info;
+import io.swagger.v3.oas.models.media.*;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import io.swagger.v3.oas.models.responses.ApiResponses;
+import io.swagger.v3.oas.models.tags.Tag;
+import io.swagger.v3.parser.util.SchemaTypeUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class StreamingSpecReader {
+    private static final String COMPONENTS_PREFIX = "#/components/";
+    private static final String COMPONENTS_SCHEMAS_PREFIX = COMPONENTS_PREFIX + "schemas/";
+    private static final Map<String, PathItem.HttpMethod> httpMethods = Arrays.stream(PathItem.HttpMethod.values())
+            .collect(Collectors.toMap(m -> m.name().toLowerCase(Locale.ROOT), m -> m));
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+
+    public OpenAPI read(Path specFile) throws IOException {
+        var mapper = specFile.getFileName().toString().endsWith(".json") ? jsonMapper : yamlMapper;
+        try (var parser = mapper.createParser(specFile.toFile())) {
+            return new DocumentReader(parser).read();
+        }
+    }
+
+    public OpenAPI readContents(String content) throws IOException {
+        var mapper = content.stripLeading().startsWith("{") ? jsonMapper : yamlMapper;
+        try (var parser = mapper.createParser(content)) {
+            return new DocumentReader(parser).read();
+        }
+    }
+
+    // Читает документ одним проходом и строит только то, что попадает в модель:
+    // тэги, операции, параметры, тела запросов и ответов и схемы компонентов.
+    // Ссылки на #/components/schemas/ остаются ссылками и разрешаются по требованию через SchemaStorage
+    private static class DocumentReader {
+        private final JsonParser parser;
+        private final Map<String, Parameter> componentParameters = new HashMap<>();
+        private final Map<String, RequestBody> componentRequestBodies = new HashMap<>();
+        private final Map<String, ApiResponse> componentResponses = new HashMap<>();
+
+        DocumentReader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        OpenAPI read() throws IOException {
+            var openAPI = new OpenAPI();
+            var paths = new Paths();
+            var schemas = new LinkedHashMap<String, Schema>();
+
+            parser.nextToken();
+            readObject(name -> {
+                switch (name) {
+                    case "info" -> openAPI.setInfo(readInfo());
+                    case "tags" -> openAPI.setTags(readList(this::readTag));
+                    case "paths" -> readObject(path -> paths.addPathItem(path, readPathItem(path)));
+                    case "components" -> readObject(section -> {
+                        switch (section) {
+                            case "schemas" -> readObject(schemaName -> schemas.put(schemaName, readSchema()));
+                            case "parameters" -> readObject(parameterName -> componentParameters.put(parameterName, readParameter()));
+                            case "requestBodies" -> readObject(bodyName -> componentRequestBodies.put(bodyName, readRequestBody()));
+                            case "responses" -> readObject(responseName -> componentResponses.put(responseName, readResponse()));
+                            default -> parser.skipChildren();
+                        }
+                    });
+                    default -> parser.skipChildren();
+                }
+            });
+
+            // Компоненты могут идти в документе после путей, поэтому их ссылки разрешаются в конце
+            for (var pathItem : paths.values()) {
+                for (var operation : pathItem.readOperations()) {
+                    resolveReferences(operation);
+                }
+            }
+
+            var components = new Components();
+            components.setSchemas(schemas);
+            openAPI.setComponents(components);
+            openAPI.setPaths(paths);
+            return openAPI;
+        }
+
+        private Info readInfo() throws IOException {
+            var info = new Info();
+            readObject(name -> {
+                switch (name) {
+                    case "title" -> info.setTitle(parser.getValueAsString());
+                    case "description" -> info.setDescription(parser.getValueAsString());
+                    default -> parser.skipChildren();
+                }
+            });
+            return info;
+        }
+
+        private Tag readTag() throws IOException {
+            var tag = new Tag();
+            readObject(name -> {
+                switch (name) {
+                    case "name" -> tag.setName(parser.getValueAsString());
+                    case "description" -> tag.setDescription(parser.getValueAsString());
+                    default -> parser.skipChildren();
+                }
+            });
+            return tag;
+        }
+
+        private PathItem readPathItem(String path) throws IOException {
+            var pathItem = new PathItem();
+            readObject(name -> {
+                var method = httpMethods.get(name);
+                if (method != null) {
+                    pathItem.operation(method, readOperation());
+                } else if (name.equals("$ref")) {
+                    throw new UnsupportedOperationException("Path item $ref is not supported by the streaming reader: " + path);
+                } else {
+                    parser.skipChildren();
+                }
+            });
+            return pathItem;
+        }
+
+        private Operation readOperation() throws IOException {
+            var operation = new Operation();
+            readObject(name -> {
+                switch (name) {
+                    case "operationId" -> operation.setOperationId(parser.getValueAsString());
+                    case "summary" -> operation.setSummary(parser.getValueAsString());
+                    case "description" -> operation.setDescription(parser.getValueAsString());
+                    case "tags" -> operation.setTags(readList(parser::getValueAsString));
+                    case "parameters" -> operation.setParameters(readList(this::readParameter));
+                    case "requestBody" -> operation.setRequestBody(readRequestBody());
+                    case "responses" -> {
+                        var responses = new ApiResponses();
+                        readObject(code -> responses.addApiResponse(code, readResponse()));
+                        operation.setResponses(responses);
+                    }
+                    default -> parser.skipChildren();
+                }
+            });
+            return operation;
+        }
+
+        private Parameter readParameter() throws IOException {
+            var parameter = new Parameter();
+            readObject(name -> {
+                switch (name) {
+                    case "$ref" -> parameter.set$ref(parser.getValueAsString());
+                    case "name" -> parameter.setName(parser.getValueAsString());
+                    case "in" -> parameter.setIn(parser.getValueAsString());
+                    case "description" -> parameter.setDescription(parser.getValueAsString());
+                    case "required" -> parameter.setRequired(parser.getValueAsBoolean());
+                    default -> parser.skipChildren();
+                }
+            });
+            return parameter;
+        }
+
+        private RequestBody readRequestBody() throws IOException {
+            var requestBody = new RequestBody();
+            readObject(name -> {
+                switch (name) {
+                    case "$ref" -> requestBody.set$ref(parser.getValueAsString());
+                    case "description" -> requestBody.setDescription(parser.getValueAsString());
+                    case "content" -> requestBody.setContent(readContent());
+                    default -> parser.skipChildren();
+                }
+            });
+            return requestBody;
+        }
+
+        private ApiResponse readResponse() throws IOException {
+            var response = new ApiResponse();
+            readObject(name -> {
+                switch (name) {
+                    case "$ref" -> response.set$ref(parser.getValueAsString());
+                    case "description" -> response.setDescription(parser.getValueAsString());
+                    case "content" -> response.setContent(readContent());
+                    default -> parser.skipChildren();
+                }
+            });
+            return response;
+        }
+
+        private Content readContent() throws IOException {
+            var content = new Content();
+            readObject(mimeType -> {
+                var mediaType = new MediaType();
+                readObject(name -> {
+                    if (name.equals("schema")) {
+                        mediaType.setSchema(readSchema());
+                    } else {
+                        // Примеры и кодировки в документацию не попадают
+                        parser.skipChildren();
+                    }
+                });
+                content.addMediaType(mimeType, mediaType);
+            });
+            return content;
+        }
+
+        private Schema<?> readSchema() throws IOException {
+            // Поля схемы приходят в произвольном порядке, а класс схемы зависит от type и format
+            var definition = new SchemaDefinition();
+            readObject(name -> {
+                switch (name) {
+                    case "$ref" -> definition.ref = parser.getValueAsString();
+                    case "type" -> definition.type = readType();
+                    case "format" -> definition.format = parser.getValueAsString();
+                    case "description" -> definition.description = parser.getValueAsString();
+                    case "example" -> definition.example = parser.readValueAs(Object.class);
+                    case "items" -> definition.items = readSchema();
+                    case "properties" -> {
+                        definition.properties = new LinkedHashMap<>();
+                        readObject(propertyName -> definition.properties.put(propertyName, readSchema()));
+                    }
+                    case "required" -> definition.required = readList(parser::getValueAsString);
+                    case "allOf" -> definition.allOf = readList(this::readSchema);
+                    case "oneOf" -> definition.oneOf = readList(this::readSchema);
+                    case "anyOf" -> definition.anyOf = readList(this::readSchema);
+                    case "additionalProperties" -> definition.additionalProperties = parser.currentToken() == JsonToken.START_OBJECT
+                            ? readSchema()
+                            : parser.getValueAsBoolean();
+                    default -> parser.skipChildren();
+                }
+            });
+            return definition.toSchema();
+        }
+
+        private String readType() throws IOException {
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                return parser.getValueAsString();
+            }
+            // OpenAPI 3.1: список типов, из которого берётся первый ненулевой
+            var types = readList(parser::getValueAsString);
+            return types.stream().filter(t -> !t.equals("null")).findFirst().orElse(null);
+        }
+
+        private void resolveReferences(Operation operation) {
+            ComponentReferences.resolve(operation, componentParameters, componentRequestBodies, componentResponses, "the streaming reader");
+        }
+
+        private void readObject(FieldReader fieldReader) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return;
+            }
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected an object but found " + parser.currentToken());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var name = parser.currentName();
+                parser.nextToken();
+                fieldReader.read(name);
+            }
+        }
+
+        private <T> List<T> readList(ElementReader<T> elementReader) throws IOException {
+            var list = new ArrayList<T>();
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return list;
+            }
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an array but found " + parser.currentToken());
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                list.add(elementReader.read());
+            }
+            return list;
+        }
+    }
+
+    private static class SchemaDefinition {
+        String ref;
+        String type;
+        String format;
+        String description;
+        Object example;
+        Schema<?> items;
+        Map<String, Schema> properties;
+        List<String> required;
+        List<Schema> allOf;
+        List<Schema> oneOf;
+        List<Schema> anyOf;
+        Object additionalProperties;
+
+        Schema<?> toSchema() {
+            if (ref != null) {
+                if (!ref.startsWith(COMPONENTS_SCHEMAS_PREFIX)) {
+                    throw new UnsupportedOperationException("Only local " + COMPONENTS_SCHEMAS_PREFIX + " references are supported by the streaming reader: " + ref);
+                }
+                // Соседние с $ref поля в OpenAPI 3.0 игнорируются
+                var refSchema = new Schema<>();
+                refSchema.set$ref(ref);
+                return refSchema;
+            }
+
+            // Тот же выбор класса, что и у десериализатора swagger-parser
+            Schema schema;
+            if (allOf != null || oneOf != null || anyOf != null) {
+                schema = new ComposedSchema();
+            } else if (items != null || "array".equals(type)) {
+                schema = new ArraySchema();
+            } else if (additionalProperties instanceof Schema || Boolean.TRUE.equals(additionalProperties)) {
+                schema = new MapSchema();
+            } else {
+                schema = SchemaTypeUtil.createSchema(type, format);
+            }
+
+            if (type != null) {
+                schema.setType(type);
+            }
+            if (format != null) {
+                schema.setFormat(format);
+            }
+            schema.setDescription(description);
+            if (items != null) {
+                schema.setItems(items);
+            }
+            if (properties != null) {
+                schema.setProperties(properties);
+            }
+            if (required != null) {
+                schema.setRequired(required);
+            }
+            if (allOf != null) {
+                schema.setAllOf(allOf);
+            }
+            if (oneOf != null) {
+                schema.setOneOf(oneOf);
+            }
+            if (anyOf != null) {
+                schema.setAnyOf(anyOf);
+            }
+            if (additionalProperties != null) {
+                schema.setAdditionalProperties(additionalProperties);
+            }
+            if (example != null) {
+                schema.setExample(example);
+            }
+            return schema;
+        }
+    }
+
+    @FunctionalInterface
+    private interface FieldReader {
+        void read(String name) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ElementReader<T> {
+        T read() throws IOException;
+    }
+}
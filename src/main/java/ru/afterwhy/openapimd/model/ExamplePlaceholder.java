@@ -0,0 +1,6 @@
+package ru.afterwhy.openapimd.model;
+
+// Значения примера, зависящие от локали: подставляются при рендере, поэтому модель общая для всех локалей
+public enum ExamplePlaceholder {
+    DEFAULT_STRING
+}
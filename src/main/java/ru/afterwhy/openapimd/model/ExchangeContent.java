@@ -1,6 +1,47 @@
 package ru.afterwhy.openapimd.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
-public record ExchangeContent(Map<String, SpecSchema> content) {
+// Варианты по MIME-типам в параллельных массивах вместо LinkedHashMap; сами типы интернируются,
+// так как "application/json" повторяется в каждом запросе и ответе
+public final class ExchangeContent {
+    private final String[] mimeTypes;
+    private final SpecSchema[] schemas;
+
+    private ExchangeContent(String[] mimeTypes, SpecSchema[] schemas) {
+        this.mimeTypes = mimeTypes;
+        this.schemas = schemas;
+    }
+
+    // Варианты идут в порядке обхода переданной карты
+    public static ExchangeContent of(Map<String, SpecSchema> content) {
+        var mimeTypes = new String[content.size()];
+        var schemas = new SpecSchema[content.size()];
+        var i = 0;
+        for (var variant : content.entrySet()) {
+            mimeTypes[i] = variant.getKey().intern();
+            schemas[i] = variant.getValue();
+            i++;
+        }
+        return new ExchangeContent(mimeTypes, schemas);
+    }
+
+    public int size() {
+        return mimeTypes.length;
+    }
+
+    public String getMimeType(int index) {
+        return mimeTypes[index];
+    }
+
+    public SpecSchema getSchema(int index) {
+        return schemas[index];
+    }
+
+    public List<SpecSchema> schemas() {
+        return Collections.unmodifiableList(Arrays.asList(schemas));
+    }
 }
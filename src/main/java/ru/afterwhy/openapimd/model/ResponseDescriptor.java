@@ -1,7 +1,55 @@
 package ru.afterwhy.openapimd.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
-public record ResponseDescriptor(Map<Integer, ExchangeContent> responses) {
+// Коды ответов - в int[], содержимое - в параллельном массиве: без упакованных Integer и узлов HashMap
+public final class ResponseDescriptor {
+    private static final ResponseDescriptor EMPTY = new ResponseDescriptor(new int[0], new ExchangeContent[0]);
 
+    private final int[] codes;
+    private final ExchangeContent[] contents;
+
+    private ResponseDescriptor(int[] codes, ExchangeContent[] contents) {
+        this.codes = codes;
+        this.contents = contents;
+    }
+
+    // Ответы идут в порядке обхода переданной карты
+    public static ResponseDescriptor of(Map<Integer, ExchangeContent> responses) {
+        if (responses.isEmpty()) {
+            return EMPTY;
+        }
+        var codes = new int[responses.size()];
+        var contents = new ExchangeContent[responses.size()];
+        var i = 0;
+        for (var response : responses.entrySet()) {
+            codes[i] = response.getKey();
+            contents[i] = response.getValue();
+            i++;
+        }
+        return new ResponseDescriptor(codes, contents);
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    public boolean isEmpty() {
+        return codes.length == 0;
+    }
+
+    public int getCode(int index) {
+        return codes[index];
+    }
+
+    public ExchangeContent getContent(int index) {
+        return contents[index];
+    }
+
+    public List<ExchangeContent> contents() {
+        return Collections.unmodifiableList(Arrays.asList(contents));
+    }
 }
@@ -13,9 +13,23 @@ public record SpecApiEndpoint(String operationId,
                               ExchangeContent request,
                               ResponseDescriptor responses) {
 
+    public SpecApiEndpoint {
+        // Одни и те же тэги у тысяч операций: общие строки и неизменяемый список точного размера
+        if (tag != null) {
+            var tags = tag.toArray(String[]::new);
+            for (int i = 0; i < tags.length; i++) {
+                tags[i] = tags[i].intern();
+            }
+            tag = List.of(tags);
+        }
+    }
+
     public String getSummaryEvenIfNotExists() {
+        return getSummaryEvenIfNotExists(summary, method, path);
+    }
+
+    public static String getSummaryEvenIfNotExists(String summary, HttpMethod method, String path) {
         // Используем путь, если summary не указано
         return Objects.requireNonNullElseGet(summary, () -> "%s.%s".formatted(method.name().toUpperCase(), path));
-
     }
 }
@@ -0,0 +1,30 @@
+package ru.afterwhy.openapimd.model;
+
+import java.util.function.Supplier;
+
+public final class SpecExample {
+    private Supplier<Object> generator;
+    private Object value;
+
+    private SpecExample(Supplier<Object> generator, Object value) {
+        this.generator = generator;
+        this.value = value;
+    }
+
+    public static SpecExample of(Object value) {
+        return new SpecExample(null, value);
+    }
+
+    public static SpecExample lazy(Supplier<Object> generator) {
+        return new SpecExample(generator, null);
+    }
+
+    public synchronized Object get() {
+        // Пример строится при первом обращении, после чего генератор со ссылками на исходную схему отпускается
+        if (generator != null) {
+            value = generator.get();
+            generator = null;
+        }
+        return value;
+    }
+}
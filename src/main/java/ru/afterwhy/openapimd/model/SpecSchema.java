@@ -6,6 +6,6 @@ public record SpecSchema(
         String name,
         String description,
         List<SpecSchemaProperty> properties,
-        Object example,
+        SpecExample example,
         SpecSchema itemSpec) {
 }
@@ -5,7 +5,13 @@ public record SpecSchemaProperty(SpecSchema schema,
                                  String type,
                                  String format,
                                  String description,
-                                 Object example,
+                                 SpecExample example,
                                  boolean required) {
 
+    public SpecSchemaProperty {
+        // Тип и формат берутся из небольшого набора значений, а копия строки хранится в каждом свойстве
+        type = type != null ? type.intern() : null;
+        format = format != null ? format.intern() : null;
+    }
+
 }
@@ -1,18 +1,35 @@
 package ru.afterwhy.openapimd.model;
 
 import java.util.List;
-import java.util.Objects;
 
 public record Specification(String title,
                             String description,
                             List<SpecTag> tags,
                             List<SpecApiEndpoint> endpoints,
-                            List<SpecSchema> schemas) {
+                            List<SpecSchema> schemas,
+                            SpecificationIndex index) {
+
+    public Specification(String title,
+                         String description,
+                         List<SpecTag> tags,
+                         List<SpecApiEndpoint> endpoints,
+                         List<SpecSchema> schemas) {
+        this(title, description, tags, endpoints, schemas, new SpecificationIndex(endpoints));
+    }
 
     public SpecApiEndpoint getEndpoint(HttpMethod method, String path) {
-        return endpoints.stream()
-                .filter(e -> Objects.equals(e.method(), method) && Objects.equals(e.path(), path))
-                .findFirst()
-                .orElse(null);
+        return index.getEndpoint(method, path);
+    }
+
+    public SpecApiEndpoint getEndpointByOperationId(String operationId) {
+        return index.getEndpointByOperationId(operationId);
+    }
+
+    public List<SpecApiEndpoint> getEndpointsByTag(String tag) {
+        return index.getEndpointsByTag(tag);
+    }
+
+    public List<SpecApiEndpoint> getEndpointsUsingSchema(String schemaName) {
+        return index.getEndpointsUsingSchema(schemaName);
     }
 }
@@ -0,0 +1,125 @@
+package ru.afterwhy.openapimd.model;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+public class SpecificationIndex {
+    private final Map<HttpMethod, Map<String, SpecApiEndpoint>> endpointsByMethodAndPath = new EnumMap<>(HttpMethod.class);
+    private final Map<String, SpecApiEndpoint> endpointsByOperationId = new HashMap<>();
+    private final Map<String, List<SpecApiEndpoint>> endpointsByTag = new HashMap<>();
+    private final List<SpecApiEndpoint> endpoints;
+    // Обратный индекс по схемам нужен редко и требует обхода графов схем, поэтому строится при первом запросе
+    private Map<String, List<SpecApiEndpoint>> endpointsBySchemaName;
+
+    public SpecificationIndex(List<SpecApiEndpoint> endpoints) {
+        this.endpoints = endpoints;
+        for (var endpoint : endpoints) {
+            endpointsByMethodAndPath.computeIfAbsent(endpoint.method(), _ -> new HashMap<>())
+                    .putIfAbsent(endpoint.path(), endpoint);
+
+            if (endpoint.operationId() != null) {
+                endpointsByOperationId.putIfAbsent(endpoint.operationId(), endpoint);
+            }
+
+            if (endpoint.tag() != null) {
+                for (var tag : endpoint.tag()) {
+                    endpointsByTag.computeIfAbsent(tag, _ -> new ArrayList<>()).add(endpoint);
+                }
+            }
+        }
+    }
+
+    public SpecApiEndpoint getEndpoint(HttpMethod method, String path) {
+        var endpointsByPath = endpointsByMethodAndPath.get(method);
+        return endpointsByPath != null ? endpointsByPath.get(path) : null;
+    }
+
+    public SpecApiEndpoint getEndpointByOperationId(String operationId) {
+        return endpointsByOperationId.get(operationId);
+    }
+
+    public List<SpecApiEndpoint> getEndpointsByTag(String tag) {
+        return endpointsByTag.getOrDefault(tag, List.of());
+    }
+
+    public List<SpecApiEndpoint> getEndpointsUsingSchema(String schemaName) {
+        return getEndpointsBySchemaName().getOrDefault(schemaName, List.of());
+    }
+
+    private synchronized Map<String, List<SpecApiEndpoint>> getEndpointsBySchemaName() {
+        if (endpointsBySchemaName == null) {
+            // Множество имён, достижимых из именованной схемы, считается один раз на весь индекс
+            var reachableSchemaNames = new IdentityHashMap<SpecSchema, Set<String>>();
+            var index = new HashMap<String, List<SpecApiEndpoint>>();
+            for (var endpoint : endpoints) {
+                for (var schemaName : getUsedSchemaNames(endpoint, reachableSchemaNames)) {
+                    index.computeIfAbsent(schemaName, _ -> new ArrayList<>()).add(endpoint);
+                }
+            }
+            endpointsBySchemaName = index;
+        }
+        return endpointsBySchemaName;
+    }
+
+    private static Set<String> getUsedSchemaNames(SpecApiEndpoint endpoint, Map<SpecSchema, Set<String>> reachableSchemaNames) {
+        var schemaNames = new LinkedHashSet<String>();
+        var visited = Collections.<SpecSchema>newSetFromMap(new IdentityHashMap<>());
+
+        if (endpoint.request() != null) {
+            collectSchemaNames(endpoint.request(), schemaNames, visited, reachableSchemaNames);
+        }
+        if (endpoint.responses() != null) {
+            for (var exchangeContent : endpoint.responses().contents()) {
+                collectSchemaNames(exchangeContent, schemaNames, visited, reachableSchemaNames);
+            }
+        }
+
+        return schemaNames;
+    }
+
+    private static void collectSchemaNames(ExchangeContent exchangeContent, Set<String> schemaNames, Set<SpecSchema> visited,
+                                           Map<SpecSchema, Set<String>> reachableSchemaNames) {
+        for (var schema : exchangeContent.schemas()) {
+            // Встроенные обёртки эндпойнта обходятся, на именованной схеме обход останавливается
+            walk(schema, visited, current -> {
+                if (current.name() == null) {
+                    return true;
+                }
+                schemaNames.addAll(reachableSchemaNames.computeIfAbsent(current, SpecificationIndex::getReachableSchemaNames));
+                return false;
+            });
+        }
+    }
+
+    private static Set<String> getReachableSchemaNames(SpecSchema schema) {
+        var schemaNames = new LinkedHashSet<String>();
+        walk(schema, Collections.newSetFromMap(new IdentityHashMap<>()), current -> {
+            if (current.name() != null) {
+                schemaNames.add(current.name());
+            }
+            return true;
+        });
+        return schemaNames;
+    }
+
+    // visitor - false, если вложенные схемы текущей обходить не нужно
+    private static void walk(SpecSchema schema, Set<SpecSchema> visited, Predicate<SpecSchema> visitor) {
+        // Обход в глубину без рекурсии: графы схем могут быть глубокими и циклическими
+        var stack = new ArrayDeque<SpecSchema>();
+        stack.push(schema);
+        while (!stack.isEmpty()) {
+            var current = stack.pop();
+            if (!visited.add(current) || !visitor.test(current)) {
+                continue;
+            }
+            if (current.itemSpec() != null) {
+                stack.push(current.itemSpec());
+            }
+            for (var property : current.properties()) {
+                if (property.schema() != null) {
+                    stack.push(property.schema());
+                }
+            }
+        }
+    }
+}
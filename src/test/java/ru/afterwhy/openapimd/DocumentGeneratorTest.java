@@ -0,0 +1,136 @@
+package ru.afterwhy.openapimd;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentGeneratorTest {
+    private static final Locale LOCALE = Locale.forLanguageTag("ru-RU");
+    // Компонентная схема, которую не использует ни один эндпойнт, но которая ссылается на цикл Pet - Owner
+    private static final String ZOO_SCHEMA = """
+                Zoo:
+                  type: object
+                  properties:
+                    keeper:
+                      $ref: '#/components/schemas/Owner'
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sameSpecGivesIdenticalOutput() throws IOException {
+        var specFile = copySpec("pets.yaml");
+
+        var first = generate(createGenerator(null), specFile, "first.md");
+        var second = generate(createGenerator(null), specFile, "second.md");
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    void parallelOutputMatchesSequentialOutput() throws IOException {
+        var specFile = copySpec("pets.yaml");
+
+        var sequential = generate(createGenerator(null), specFile, "sequential.md");
+        var generator = new DocumentGenerator(new SpecParser(ForkJoinPool.commonPool(), null, true),
+                new MdRenderer(createObjectMapper(), LOCALE, ForkJoinPool.commonPool()), LOCALE);
+        var parallel = generate(generator, specFile, "parallel.md");
+
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void memoryBudgetOutputMatchesFullOutput() throws IOException {
+        var specFile = copySpec("pets.yaml");
+
+        var full = generate(createGenerator(null), specFile, "full.md");
+        var generator = new DocumentGenerator(new SpecParser(null, null, true), createRenderer(), LOCALE, null, false, 1L);
+        var batched = generate(generator, specFile, "batched.md");
+
+        assertEquals(full, batched);
+    }
+
+    @Test
+    void unrelatedSchemaEditWithCacheMatchesFullRebuild() throws IOException {
+        var specFile = copySpec("pets.yaml");
+        var cache = new FragmentCache(directory.resolve("cache"));
+        var before = generate(createGenerator(cache), specFile, "cached.md");
+
+        replaceInSpec(specFile, "  schemas:\n", "  schemas:\n" + ZOO_SCHEMA);
+        var cached = generate(createGenerator(cache), specFile, "cached.md");
+        var rebuilt = generate(createGenerator(null), specFile, "rebuilt.md");
+
+        assertEquals(rebuilt, cached);
+        assertNotEquals(before, cached);
+    }
+
+    @Test
+    void editedSchemaInvalidatesCachedFragments() throws IOException {
+        var specFile = copySpec("pets.yaml");
+        var cache = new FragmentCache(directory.resolve("cache"));
+        generate(createGenerator(cache), specFile, "cached.md");
+
+        replaceInSpec(specFile, "        name:\n          type: string\n        owner:",
+                "        name:\n          type: string\n          description: Кличка\n        owner:");
+        var cached = generate(createGenerator(cache), specFile, "cached.md");
+        var rebuilt = generate(createGenerator(null), specFile, "rebuilt.md");
+
+        assertTrue(cached.contains("Кличка"));
+        assertEquals(rebuilt, cached);
+    }
+
+    @Test
+    void unchangedSpecIsNotRewrittenWithCache() throws IOException {
+        var specFile = copySpec("pets.yaml");
+        var cache = new FragmentCache(directory.resolve("cache"));
+        var outputFile = directory.resolve("cached.md");
+
+        assertTrue(createGenerator(cache).generate(specFile, outputFile));
+        assertFalse(createGenerator(cache).generate(specFile, outputFile));
+    }
+
+    private DocumentGenerator createGenerator(FragmentCache fragmentCache) {
+        return new DocumentGenerator(new SpecParser(null, null, true), createRenderer(), LOCALE, fragmentCache);
+    }
+
+    private static MdRenderer createRenderer() {
+        return new MdRenderer(createObjectMapper(), LOCALE);
+    }
+
+    private static ObjectMapper createObjectMapper() {
+        var objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        return objectMapper;
+    }
+
+    private String generate(DocumentGenerator generator, Path specFile, String outputName) throws IOException {
+        var outputFile = directory.resolve(outputName);
+        generator.generate(specFile, outputFile);
+        return Files.readString(outputFile);
+    }
+
+    private Path copySpec(String resource) throws IOException {
+        var specFile = directory.resolve(resource);
+        try (InputStream input = getClass().getResourceAsStream("/" + resource)) {
+            Files.copy(input, specFile);
+        }
+        return specFile;
+    }
+
+    private static void replaceInSpec(Path specFile, String target, String replacement) throws IOException {
+        var content = Files.readString(specFile);
+        assertTrue(content.contains(target));
+        Files.writeString(specFile, content.replace(target, replacement));
+    }
+}
@@ -0,0 +1,72 @@
+package ru.afterwhy.openapimd;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiFileWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesFilesAndSkipsUnchanged() throws IOException {
+        var first = MultiFileWriter.write(directory, files("index.md", "index", "tags/pets.md", "pets"));
+        var second = MultiFileWriter.write(directory, files("index.md", "index", "tags/pets.md", "pets"));
+
+        assertEquals(2, first.changedFiles());
+        assertEquals(0, second.changedFiles());
+        assertEquals("pets", Files.readString(directory.resolve("tags/pets.md")));
+    }
+
+    @Test
+    void deletesOnlyFilesWrittenByPreviousRun() throws IOException {
+        Files.createDirectories(directory.resolve("tags"));
+        Files.writeString(directory.resolve("tags/notes.md"), "notes");
+        MultiFileWriter.write(directory, files("index.md", "index", "tags/pets.md", "pets"));
+
+        var result = MultiFileWriter.write(directory, files("index.md", "index v2", "tags/owners.md", "owners"));
+
+        // Изменился index.md, появился owners.md, удалён pets.md
+        assertEquals(3, result.changedFiles());
+        assertFalse(Files.exists(directory.resolve("tags/pets.md")));
+        assertTrue(Files.exists(directory.resolve("tags/owners.md")));
+        assertEquals("notes", Files.readString(directory.resolve("tags/notes.md")));
+    }
+
+    @Test
+    void firstRunKeepsExistingFiles() throws IOException {
+        Files.writeString(directory.resolve("README.md"), "readme");
+
+        MultiFileWriter.write(directory, files("index.md", "index"));
+
+        assertTrue(Files.exists(directory.resolve("README.md")));
+    }
+
+    @Test
+    void fileNamesAreUniqueIgnoringCase() {
+        var usedNames = new HashSet<String>();
+
+        assertEquals("Pets.md", MultiFileWriter.toFileName("Pets", usedNames));
+        assertEquals("pets-2.md", MultiFileWriter.toFileName("pets", usedNames));
+        assertEquals("_.hidden.md", MultiFileWriter.toFileName(".hidden", usedNames));
+    }
+
+    private static Map<String, Supplier<String>> files(String... pathsAndContents) {
+        var files = new LinkedHashMap<String, Supplier<String>>();
+        for (int i = 0; i < pathsAndContents.length; i += 2) {
+            var content = pathsAndContents[i + 1];
+            files.put(pathsAndContents[i], () -> content);
+        }
+        return files;
+    }
+}
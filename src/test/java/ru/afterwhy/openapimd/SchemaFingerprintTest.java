@@ -0,0 +1,31 @@
+package ru.afterwhy.openapimd;
+
+import io.swagger.v3.oas.models.media.ObjectSchema;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.media.StringSchema;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaFingerprintTest {
+    // Ссылки не разрешаются: так остаются внешние $ref без --ref-cache
+    private static final SchemaGetter UNRESOLVED = schema -> schema;
+
+    @Test
+    void equalStructuresHaveEqualFingerprints() {
+        assertEquals(SchemaFingerprint.of(holder(new StringSchema()), UNRESOLVED),
+                SchemaFingerprint.of(holder(new StringSchema()), UNRESOLVED));
+    }
+
+    @Test
+    void unresolvedRefsAreDistinguished() {
+        var cat = holder(new Schema<>().$ref("cat.yaml#/Cat"));
+        var dog = holder(new Schema<>().$ref("dog.yaml#/Dog"));
+
+        assertNotEquals(SchemaFingerprint.of(cat, UNRESOLVED), SchemaFingerprint.of(dog, UNRESOLVED));
+    }
+
+    private static Schema<?> holder(Schema<?> pet) {
+        return new ObjectSchema().addProperty("pet", pet);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.afterwhy.openapimd;
+
+import org.junit.jupiter.api.Test;
+import ru.afterwhy.openapimd.model.SpecSchema;
+import ru.afterwhy.openapimd.model.Specification;
+
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpecParserTest {
+
+    @Test
+    void identicalInlineSchemasAreShared() throws URISyntaxException {
+        var spec = parse("inline.yaml");
+
+        assertSame(getResponseSchema(spec, "/a"), getResponseSchema(spec, "/b"));
+    }
+
+    @Test
+    void inlineSchemasWithDifferentRefsAreNotShared() throws URISyntaxException {
+        var spec = parse("inline.yaml");
+
+        var catHolder = getResponseSchema(spec, "/cat");
+        var dogHolder = getResponseSchema(spec, "/dog");
+
+        assertNotSame(catHolder, dogHolder);
+        assertEquals("Cat", catHolder.properties().getFirst().schema().name());
+        assertEquals("Dog", dogHolder.properties().getFirst().schema().name());
+    }
+
+    @Test
+    void separateParsesDoNotShareInlineSchemas() throws URISyntaxException {
+        var first = parse("inline.yaml");
+        var second = parse("inline.yaml");
+
+        assertNotSame(getResponseSchema(first, "/a"), getResponseSchema(second, "/a"));
+    }
+
+    private static Specification parse(String resource) throws URISyntaxException {
+        var specFile = Path.of(SpecParserTest.class.getResource("/" + resource).toURI());
+        return new SpecParser(null, null, true).parse(specFile.toString());
+    }
+
+    private static SpecSchema getResponseSchema(Specification spec, String path) {
+        var endpoint = spec.endpoints().stream()
+                .filter(e -> e.path().equals(path))
+                .findFirst()
+                .orElseThrow();
+        return endpoint.responses().getContent(0).getSchema(0);
+    }
+}